@@ -0,0 +1,148 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.Holder.holdFrom;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A future-like counterpart of {@link Holder}, eventually keeping either a
+ * value or an exception produced by a supplier running on an executor. It is
+ * normally obtained from {@link Holder#holdAsync(ExceptionalSupplier, Executor)}.
+ * <p>
+ * All the processing stages run without blocking once the supplier completes,
+ * each producing a new asynchronous holder. Any exception thrown by a stage,
+ * including the ones raised from {@code whenException()} chains, gets kept in
+ * the resulting holder rather than being lost in the executor thread.
+ * <p>
+ * Example:
+ * <pre>
+ * final List{@code <}AsyncHolder{@code <}User{@code >>} users = ids.stream()
+ *     .map(id {@code ->} holdAsync(() {@code ->} db.findUser(id))
+ *         .then(holder {@code ->} holder
+ *             .whenException(TimeoutException.class).thenSet(User.UNKNOWN)
+ *             .whenEmpty().thenSet(User.NONE)
+ *         )
+ *     )
+ *     .collect(toList());
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class AsyncHolder<T> {
+    private final CompletableFuture<Holder<T>> _future;
+
+    AsyncHolder(final CompletableFuture<Holder<T>> future) {
+        _future = future;
+    }
+
+    static <R> AsyncHolder<R> supply(final ExceptionalSupplier<R> supplier, final Executor executor) {
+        try {
+            return new AsyncHolder<>(CompletableFuture.supplyAsync(() -> holdFrom(supplier), executor));
+        }
+        catch (final RuntimeException exception) {
+            return new AsyncHolder<>(CompletableFuture.completedFuture(new Holder<R>().setException(exception)));
+        }
+    }
+
+    /**
+     * Registers a processing stage to run on the completed {@link Holder},
+     * normally a chain of {@code whenException()}, {@code whenEmpty()} and
+     * similar calls returning that holder.
+     * <p>
+     * @param stage [{@link UnaryOperator}{@code <}{@link Holder}{@code <T>>}]
+     *     a code block to process the completed holder
+     * <p>
+     * @return [{@link AsyncHolder}{@code <T>}]
+     *     a new asynchronous holder for the outcome of the stage
+    */
+    public AsyncHolder<T> then(final UnaryOperator<Holder<T>> stage) {
+        return stage(stage::apply);
+    }
+
+    public AsyncHolder<T> tap(final ExceptionalConsumer<T> consumer) {
+        return stage(holder -> holder.replace(value -> {
+            consumer.accept(value);
+            return value;
+        }));
+    }
+
+    public AsyncHolder<T> replace(final ExceptionalFunction<T, T> converter) {
+        return stage(holder -> holder.replace(converter));
+    }
+
+    /**
+     * Asynchronous counterpart of {@link Holder#map(ExceptionalFunction)}.
+     * Unlike the synchronous version, an exception thrown by the converter
+     * does not propagate but gets kept in the resulting holder, same as an
+     * exception already present in this one.
+     * <p>
+     * @param <R>
+     *     the type of a mapped value, normally inferred automatically
+     * <p>
+     * @param converter [{@link ExceptionalFunction}{@code <T, R>}]
+     *     a code block to map the value, not invoked when there is none
+     * <p>
+     * @return [{@link AsyncHolder}{@code <R>}]
+     *     a new asynchronous holder for the mapped value
+    */
+    public <R> AsyncHolder<R> map(final ExceptionalFunction<T, R> converter) {
+        return stage(holder -> {
+            if (holder.hasException() == true) {
+                return new Holder<R>().setException(holder.exception());
+            }
+
+            return holder.hasValue() ? holdFrom(() -> converter.apply(holder.get())) : new Holder<R>();
+        });
+    }
+
+    public boolean isDone() {
+        return _future.isDone();
+    }
+
+    /**
+     * Waits for all the stages to complete and returns the resulting holder.
+     * <p>
+     * @return [{@link Holder}{@code <T>}]
+     *     the holder with the outcome of the last stage
+    */
+    public Holder<T> join() {
+        return _future.join();
+    }
+
+    public CompletableFuture<Holder<T>> toCompletableFuture() {
+        return _future.thenApply(Function.identity());
+    }
+
+    // Every stage gets its own copy of the completed holder, so that stages
+    // modifying it in place neither affect this asynchronous holder nor race
+    // with other stages registered on it.
+    //
+    private <R> AsyncHolder<R> stage(final Function<Holder<T>, Holder<R>> stage) {
+        return new AsyncHolder<>(_future.thenApply(holder -> {
+            try {
+                return stage.apply(copyOf(holder));
+            }
+            catch (final RuntimeException exception) {
+                return new Holder<R>().setException(exception);
+            }
+        }));
+    }
+
+    private static <R> Holder<R> copyOf(final Holder<R> holder) {
+        if (holder.hasException() == true) {
+            return new Holder<R>().setException(holder.exception());
+        }
+
+        return new Holder<>(holder.get());
+    }
+}
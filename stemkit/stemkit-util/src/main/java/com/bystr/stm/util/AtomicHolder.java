@@ -0,0 +1,235 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.ExceptionUtils.illegalStateException;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+
+/**
+ * A thread-safe counterpart of {@link Holder}, keeping either a value or an
+ * exception (or nothing at all) and allowing them to be updated concurrently
+ * without locking.
+ * <p>
+ * The value and the exception are kept together in a single immutable state
+ * object swapped atomically, so the readers always observe them consistently.
+ * Updates computed from the current value ({@link #replace(ExceptionalFunction)},
+ * {@link #accumulate(Object, BinaryOperator)}) are retried until they succeed,
+ * hence the functions passed to them must be side effect free.
+ * <p>
+ * For {@code whenException()}/{@code whenEmpty()} style processing take a
+ * {@link #snapshot()}, which is a plain {@link Holder} with the value and
+ * the exception captured at the same moment.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class AtomicHolder<T> {
+    private static final State<?> EMPTY = new State<>(null, null);
+
+    private final AtomicReference<State<T>> _state = new AtomicReference<>(empty());
+
+    public AtomicHolder() {
+    }
+
+    public AtomicHolder(final T object) {
+        set(object);
+    }
+
+    public T get() {
+        final State<T> state = _state.get();
+
+        if (state.exception == null) {
+            return state.object;
+        }
+
+        throw illegalState(state.exception, "Unexpected exception", state.exception.getClass().getName(), state.exception.getMessage());
+    }
+
+    public Optional<T> getOptional() {
+        return Optional.ofNullable(get());
+    }
+
+    public Exception exception() {
+        final Exception exception = _state.get().exception;
+
+        if (exception != null) {
+            return exception;
+        }
+
+        throw illegalState(null, "No expected exception");
+    }
+
+    public final AtomicHolder<T> set(final T object) {
+        _state.set(object == null ? empty() : new State<>(object, null));
+        return this;
+    }
+
+    public AtomicHolder<T> setException(final Exception exception) {
+        _state.set(exception == null ? empty() : new State<>(null, exception));
+        return this;
+    }
+
+    public AtomicHolder<T> clear() {
+        return set(null);
+    }
+
+    public boolean isEmpty() {
+        return _state.get() == EMPTY;
+    }
+
+    public boolean hasValue() {
+        return _state.get().object != null;
+    }
+
+    public boolean hasException() {
+        return _state.get().exception != null;
+    }
+
+    /**
+     * Atomically sets the value to {@code update} if the current value is the
+     * same object as {@code expect} (compared by identity). A holder keeping an
+     * exception never matches.
+     * <p>
+     * @param expect [{@code T}]
+     *     the value expected to be held, {@code null} for an empty holder
+     * @param update [{@code T}]
+     *     the new value to keep, {@code null} to clear the holder
+     * <p>
+     * @return [{@code boolean}]
+     *     {@code true} if the value has been updated
+    */
+    public boolean compareAndSet(final T expect, final T update) {
+        final State<T> next = update == null ? empty() : new State<>(update, null);
+
+        while (true) {
+            final State<T> current = _state.get();
+
+            if (current.exception != null || current.object != expect) {
+                return false;
+            }
+
+            if (_state.compareAndSet(current, next) == true) {
+                return true;
+            }
+        }
+    }
+
+    public AtomicHolder<T> acceptFrom(final ExceptionalSupplier<T> supplier) {
+        _state.set(stateFrom(supplier));
+        return this;
+    }
+
+    /**
+     * Lock-free version of {@link Holder#replace(ExceptionalFunction)}. When
+     * a value is present it gets passed to the converter and the result is
+     * installed unless the holder has been concurrently modified, in which
+     * case the converter is invoked again with the fresh value. Exception
+     * thrown by the converter gets kept in the holder instead of the value.
+     * <p>
+     * @param converter [{@link ExceptionalFunction}{@code <T, T>}]
+     *     a side effect free function to produce a new value from the current one
+     * <p>
+     * @return [{@link AtomicHolder}{@code <T>}]
+     *     this holder
+    */
+    public AtomicHolder<T> replace(final ExceptionalFunction<T, T> converter) {
+        while (true) {
+            final State<T> current = _state.get();
+
+            if (current.object == null) {
+                return this;
+            }
+
+            if (_state.compareAndSet(current, stateFrom(() -> converter.apply(current.object))) == true) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Atomically combines the current value with the specified one using the
+     * accumulator function, treating an empty holder as having {@code object}
+     * as its initial value. A holder keeping an exception is left unchanged.
+     * <p>
+     * @param object [{@code T}]
+     *     the value to combine with the current one
+     * @param accumulator [{@link BinaryOperator}{@code <T>}]
+     *     a side effect free function, receiving the current value first
+     * <p>
+     * @return [{@code T}]
+     *     the updated value, {@code null} when the holder keeps an exception
+    */
+    public T accumulate(final T object, final BinaryOperator<T> accumulator) {
+        while (true) {
+            final State<T> current = _state.get();
+
+            if (current.exception != null) {
+                return null;
+            }
+
+            final T result = current.object == null ? object : accumulator.apply(current.object, object);
+
+            if (_state.compareAndSet(current, result == null ? empty() : new State<>(result, null)) == true) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns a plain {@link Holder} with the value and the exception of this
+     * holder, captured consistently at the moment of the call.
+     * <p>
+     * @return [{@link Holder}{@code <T>}]
+     *     a new holder detached from this one
+    */
+    public Holder<T> snapshot() {
+        final State<T> state = _state.get();
+
+        if (state.exception != null) {
+            return new Holder<T>().setException(state.exception);
+        }
+
+        return new Holder<>(state.object);
+    }
+
+    public static <R> AtomicHolder<R> holdFrom(final ExceptionalSupplier<R> supplier) {
+        return (new AtomicHolder<R>()).acceptFrom(supplier);
+    }
+
+    private static <T> State<T> stateFrom(final ExceptionalSupplier<T> supplier) {
+        try {
+            final T object = supplier.get();
+            return object == null ? empty() : new State<>(object, null);
+        }
+        catch (final Exception exception) {
+            return new State<>(null, exception);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> State<T> empty() {
+        return (State<T>) EMPTY;
+    }
+
+    private RuntimeException illegalState(final Exception cause, final String... components) {
+        return illegalStateException(cause, this.getClass().getName(), components);
+    }
+
+    private static final class State<T> {
+        final T object;
+        final Exception exception;
+
+        State(final T object, final Exception exception) {
+            this.object = object;
+            this.exception = exception;
+        }
+    }
+}
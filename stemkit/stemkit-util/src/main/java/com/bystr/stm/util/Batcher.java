@@ -0,0 +1,160 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Gathers concurrent single key calls into bulk ones, as made by
+// FunctionalUtils.batching(). The first caller of a batch leads it: it waits
+// for the batch to fill up or for the delay to expire, then makes the bulk
+// call on its own thread while the others wait for the outcome. A caller
+// filling the batch up detaches it, so that later calls start a new one.
+//
+final class Batcher<K, V> implements Function<K, V> {
+    private final ExceptionalFunction<? super List<K>, ? extends Map<K, ? extends V>> _function;
+    private final int _maxBatch;
+    private final long _maxDelayNanos;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private Batch<K, V> _current;
+
+    Batcher(final ExceptionalFunction<? super List<K>, ? extends Map<K, ? extends V>> function, final int maxBatch, final Duration maxDelay) {
+        _function = function;
+        _maxBatch = maxBatch;
+        _maxDelayNanos = maxDelay.toNanos();
+    }
+
+    @Override
+    public V apply(final K key) {
+        final Batch<K, V> batch;
+        boolean leading = false;
+
+        _lock.lock();
+
+        try {
+            if (_current == null) {
+                _current = new Batch<>(_lock.newCondition());
+                leading = true;
+            }
+
+            batch = _current;
+            batch.keys.add(key);
+
+            if (batch.keys.size() >= _maxBatch) {
+                _current = null;
+                batch.filled.signal();
+            }
+
+            if (leading == true) {
+                awaitFilled(batch);
+            }
+        }
+        finally {
+            _lock.unlock();
+        }
+
+        if (leading == true) {
+            batch.run(_function);
+        }
+        else {
+            batch.await();
+        }
+
+        return batch.result(key);
+    }
+
+    // Waits under the lock until the batch gets detached or the delay
+    // expires, then makes sure it is detached. An interrupt only cuts the
+    // wait short, the batch still gets run for the callers in it.
+    //
+    private void awaitFilled(final Batch<K, V> batch) {
+        long nanos = _maxDelayNanos;
+
+        try {
+            while (_current == batch && nanos > 0) {
+                nanos = batch.filled.awaitNanos(nanos);
+            }
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (_current == batch) {
+            _current = null;
+        }
+    }
+
+    private static final class Batch<K, V> {
+        final Set<K> keys = new LinkedHashSet<>();
+        final Condition filled;
+
+        private final CountDownLatch _completion = new CountDownLatch(1);
+        private Holder<Map<K, ? extends V>> _outcome;
+        private Error _error;
+
+        Batch(final Condition filled) {
+            this.filled = filled;
+        }
+
+        // Errors are not kept by holders, so they get recorded separately for
+        // all the callers in the batch to rethrow.
+        //
+        void run(final ExceptionalFunction<? super List<K>, ? extends Map<K, ? extends V>> function) {
+            try {
+                _outcome = new Holder<Map<K, ? extends V>>().acceptFrom(() -> function.apply(new ArrayList<>(keys)));
+            }
+            catch (final Error error) {
+                _error = error;
+            }
+            finally {
+                _completion.countDown();
+            }
+        }
+
+        void await() {
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    _completion.await();
+                    break;
+                }
+                catch (final InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted == true) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        V result(final K key) {
+            if (_error != null) {
+                throw _error;
+            }
+
+            if (_outcome.hasException() == true) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(_outcome.exception());
+            }
+
+            final Map<K, ? extends V> results = _outcome.get();
+            return results == null ? null : results.get(key);
+        }
+    }
+}
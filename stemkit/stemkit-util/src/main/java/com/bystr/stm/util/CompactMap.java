@@ -0,0 +1,133 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map keeping its keys and values in a single array, with no
+ * per-entry objects. Small maps are scanned linearly, larger ones use open
+ * addressing, so lookups stay cheap while the memory taken is a fraction
+ * of that of a {@link java.util.HashMap}. Null keys are not allowed.
+ * <p>
+ * Example:
+ * <pre>
+ * final Map&lt;String, Integer&gt; map = ObjectUtils.&lt;String, Integer&gt;makeCompactMap()
+ *     .put("a", 1)
+ *     .put("b", 2)
+ *     .build();
+ * </pre>
+ * @param <K>
+ *     the type of keys
+ * @param <V>
+ *     the type of values
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class CompactMap<K, V> extends AbstractMap<K, V> {
+    private static final int STRIDE = 2;
+
+    private final Object[] _table;
+    private final int _size;
+
+    private CompactMap(final Object[] items, final int count) {
+        _table = CompactTable.build(items, count, STRIDE);
+        _size = CompactTable.size(_table, STRIDE);
+    }
+
+    public static <K, V> CompactMap<K, V> copyOf(final Map<? extends K, ? extends V> map) {
+        final Builder<K, V> builder = new Builder<>(map.size());
+        map.forEach(builder::put);
+
+        return builder.build();
+    }
+
+    public static class Builder<K, V> {
+        private Object[] _items;
+        private int _count;
+
+        Builder(final int expectedSize) {
+            _items = new Object[Math.max(expectedSize, 1) * STRIDE];
+        }
+
+        public Builder<K, V> put(final K key, final V value) {
+            if (_items.length == _count * STRIDE) {
+                _items = Arrays.copyOf(_items, _items.length * 2);
+            }
+
+            _items[_count * STRIDE] = key;
+            _items[_count * STRIDE + 1] = value;
+            ++_count;
+
+            return this;
+        }
+
+        public CompactMap<K, V> build() {
+            return new CompactMap<>(_items, _count);
+        }
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return CompactTable.find(_table, STRIDE, key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        final int slot = CompactTable.find(_table, STRIDE, key);
+        return slot < 0 ? null : (V) _table[slot + 1];
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    private int _slot = CompactTable.nextSlot(_table, STRIDE, 0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return _slot < _table.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<K, V> next() {
+                        if (hasNext() == false) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final Entry<K, V> entry = new SimpleImmutableEntry<>((K) _table[_slot], (V) _table[_slot + 1]);
+                        _slot = CompactTable.nextSlot(_table, STRIDE, _slot + STRIDE);
+
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+}
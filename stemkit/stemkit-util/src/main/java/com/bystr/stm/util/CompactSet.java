@@ -0,0 +1,79 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set keeping its items in a single array, the same way as
+ * {@link CompactMap} does. Null items are not allowed.
+ * <p>
+ * @param <T>
+ *     the type of items
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class CompactSet<T> extends AbstractSet<T> {
+    private static final int STRIDE = 1;
+
+    private final Object[] _table;
+    private final int _size;
+
+    private CompactSet(final Object[] items) {
+        _table = CompactTable.build(items, items.length, STRIDE);
+        _size = CompactTable.size(_table, STRIDE);
+    }
+
+    @SafeVarargs
+    public static <T> CompactSet<T> of(final T... items) {
+        return new CompactSet<>(items);
+    }
+
+    public static <T> CompactSet<T> copyOf(final Collection<? extends T> items) {
+        return new CompactSet<>(items.toArray());
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean contains(final Object item) {
+        return CompactTable.find(_table, STRIDE, item) >= 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int _slot = CompactTable.nextSlot(_table, STRIDE, 0);
+
+            @Override
+            public boolean hasNext() {
+                return _slot < _table.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+
+                final T item = (T) _table[_slot];
+                _slot = CompactTable.nextSlot(_table, STRIDE, _slot + STRIDE);
+
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.Objects;
+
+// The storage shared by CompactMap and CompactSet: a single array of slots,
+// each slot being a key followed by (stride - 1) associated values. Up to
+// LINEAR_SCAN_THRESHOLD keys are packed densely and scanned linearly, more
+// keys get an open addressing table with linear probing, at most half full.
+// The two layouts are told apart by the array length alone.
+//
+final class CompactTable {
+    private CompactTable() {}
+
+    static final int LINEAR_SCAN_THRESHOLD = 8;
+    static final Object[] EMPTY = {};
+
+    static Object[] build(final Object[] items, final int count, final int stride) {
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        final Object[] table = new Object[capacityFor(count) * stride];
+        int size = 0;
+
+        for (int index = 0; index < count; ++index) {
+            final int offset = index * stride;
+            final Object key = Objects.requireNonNull(items[offset], "Null key");
+            final int slot = probe(table, stride, key);
+
+            if (table[slot] == null) {
+                ++size;
+            }
+
+            System.arraycopy(items, offset, table, slot, stride);
+        }
+
+        if (size > LINEAR_SCAN_THRESHOLD) {
+            return table;
+        }
+
+        final Object[] packed = new Object[size * stride];
+        int position = 0;
+
+        for (int slot = 0; slot < table.length; slot += stride) {
+            if (table[slot] != null) {
+                System.arraycopy(table, slot, packed, position, stride);
+                position += stride;
+            }
+        }
+
+        return packed;
+    }
+
+    static int size(final Object[] table, final int stride) {
+        if (isHashed(table, stride) == false) {
+            return table.length / stride;
+        }
+
+        int size = 0;
+
+        for (int slot = 0; slot < table.length; slot += stride) {
+            if (table[slot] != null) {
+                ++size;
+            }
+        }
+
+        return size;
+    }
+
+    static int find(final Object[] table, final int stride, final Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        if (isHashed(table, stride) == false) {
+            for (int slot = 0; slot < table.length; slot += stride) {
+                if (key.equals(table[slot]) == true) {
+                    return slot;
+                }
+            }
+
+            return -1;
+        }
+
+        final int slot = probe(table, stride, key);
+        return table[slot] == null ? -1 : slot;
+    }
+
+    static int nextSlot(final Object[] table, final int stride, final int from) {
+        for (int slot = from; slot < table.length; slot += stride) {
+            if (table[slot] != null) {
+                return slot;
+            }
+        }
+
+        return table.length;
+    }
+
+    private static boolean isHashed(final Object[] table, final int stride) {
+        return table.length > LINEAR_SCAN_THRESHOLD * stride;
+    }
+
+    // Returns the slot holding the key, or the empty slot where it belongs.
+    //
+    private static int probe(final Object[] table, final int stride, final Object key) {
+        final int mask = table.length / stride - 1;
+        final int hash = key.hashCode() * 0x9E3779B9;
+
+        for (int index = (hash ^ (hash >>> 16)) & mask; ; index = (index + 1) & mask) {
+            final int slot = index * stride;
+            final Object candidate = table[slot];
+
+            if (candidate == null || candidate.equals(key) == true) {
+                return slot;
+            }
+        }
+    }
+
+    private static int capacityFor(final int count) {
+        return Integer.highestOneBit(Math.max(count, LINEAR_SCAN_THRESHOLD) * 2 - 1) << 1;
+    }
+}
@@ -0,0 +1,71 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.Holder.holdFrom;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides facilities shared by the concurrent helpers of this package, most
+ * notably an executor to run potentially blocking tasks on.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class ConcurrencyUtils {
+    private ConcurrencyUtils() {}
+
+    /**
+     * Returns a shared executor suitable for blocking tasks. When running on
+     * a Java runtime with virtual threads, each task gets its own virtual
+     * thread, otherwise tasks run on a cached pool of daemon platform threads.
+     * <p>
+     * @return [{@link ExecutorService}]
+     *     the shared executor, never to be shut down by callers
+    */
+    public static ExecutorService defaultExecutor() {
+        return Depot.executor;
+    }
+
+    /**
+     * Tells whether {@link #defaultExecutor()} runs tasks on virtual threads.
+     * <p>
+     * @return [{@code boolean}]
+     *     {@code true} when virtual threads are used
+    */
+    public static boolean hasVirtualThreads() {
+        return Depot.virtual;
+    }
+
+    private static final class Depot {
+        static final Holder<ExecutorService> virtualExecutor = holdFrom(() ->
+            (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)
+        );
+
+        static final boolean virtual = virtualExecutor.hasValue();
+
+        static final ExecutorService executor = virtualExecutor
+            .whenException().thenSet(exception -> Executors.newCachedThreadPool(daemonThreadFactory("stemkit-worker")))
+            .get();
+    }
+
+    static ThreadFactory daemonThreadFactory(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps process wide counts of deadline-bounded evaluations performed with
+ * {@link Holder#holdFrom(ExceptionalSupplier, java.time.Duration)}, to be
+ * exported to a monitoring system of choice.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class DeadlineStatistics {
+    private static final LongAdder evaluations = new LongAdder();
+    private static final LongAdder expirations = new LongAdder();
+
+    private DeadlineStatistics() {}
+
+    /**
+     * Returns the number of deadline-bounded evaluations started.
+     * <p>
+     * @return [{@code long}]
+     *     the number of evaluations since start or last reset
+    */
+    public static long evaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Returns the number of deadline-bounded evaluations cancelled because
+     * their deadline expired.
+     * <p>
+     * @return [{@code long}]
+     *     the number of expired deadlines since start or last reset
+    */
+    public static long expirations() {
+        return expirations.sum();
+    }
+
+    public static void reset() {
+        evaluations.reset();
+        expirations.reset();
+    }
+
+    static void countEvaluation() {
+        evaluations.increment();
+    }
+
+    static void countExpiration() {
+        expirations.increment();
+    }
+}
@@ -10,34 +10,100 @@ package com.bystr.stm.util;
 
 import static com.bystr.stm.util.StreamUtils.streamOf;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 public class ExceptionUtils {
     private ExceptionUtils() {}
 
+    private static volatile boolean stackless = Boolean.getBoolean("stm.exceptions.stackless");
+
+    /**
+     * Makes the exceptions created by this class and by the holders in this
+     * package stackless with lazily composed messages (see
+     * {@link StacklessRuntimeException}), or regular ones. The initial
+     * setting comes from {@code stm.exceptions.stackless} system property,
+     * {@code false} if not set.
+     * <p>
+     * @param enabled [{@code boolean}]
+     *     {@code true} to make stackless exceptions
+    */
+    public static void useStacklessExceptions(final boolean enabled) {
+        stackless = enabled;
+    }
+
+    public static boolean usesStacklessExceptions() {
+        return stackless;
+    }
+
     public static <R> R forceRuntimeWhenException(final ExceptionalSupplier<R> action) {
+        return forceRuntimeWhenException(stackless, action);
+    }
+
+    public static void forceRuntimeWhenException(final ExceptionalRunnable action) {
+        forceRuntimeWhenException(stackless, action);
+    }
+
+    /**
+     * Same as {@link #forceRuntimeWhenException(ExceptionalSupplier)} with the
+     * kind of the wrapping exception chosen at the call site rather than by
+     * {@link #useStacklessExceptions(boolean)}.
+     * <p>
+     * @param <R>
+     *     the type of an object to return, normally inferred automatically
+     * <p>
+     * @param stacklessWrapper [{@code boolean}]
+     *     {@code true} to wrap checked exceptions in {@link StacklessRuntimeException}
+     * @param action [{@link ExceptionalSupplier}{@code <R>}]
+     *     a code block to invoke
+     * <p>
+     * @return [{@code R}]
+     *     the object returned by the action
+    */
+    public static <R> R forceRuntimeWhenException(final boolean stacklessWrapper, final ExceptionalSupplier<R> action) {
         try {
             return action.get();
         }
         catch (final Exception exception) {
-            throw runtimeExceptionUnlessAlready(exception);
+            throw runtimeExceptionUnlessAlready(stacklessWrapper, exception);
         }
     }
 
-    public static void forceRuntimeWhenException(final ExceptionalRunnable action) {
-        forceRuntimeWhenException(() -> {
+    public static void forceRuntimeWhenException(final boolean stacklessWrapper, final ExceptionalRunnable action) {
+        forceRuntimeWhenException(stacklessWrapper, () -> {
             action.run();
             return null;
         });
     }
 
     public static RuntimeException runtimeExceptionUnlessAlready(final Exception exception) {
+        return runtimeExceptionUnlessAlready(stackless, exception);
+    }
+
+    public static RuntimeException runtimeExceptionUnlessAlready(final boolean stacklessWrapper, final Exception exception) {
         if (exception instanceof RuntimeException) {
             return (RuntimeException) exception;
         }
 
+        if (stacklessWrapper == true) {
+            return new StacklessRuntimeException(exception, exception.getClass().getName(), exception.getMessage());
+        }
+
         return new RuntimeException(makeMessage(exception.getClass().getName(), exception.getMessage()), exception);
     }
 
+    static IllegalStateException illegalStateException(final Throwable cause, final String firstComponent, final String... remainingComponents) {
+        if (stackless == true) {
+            return new StacklessIllegalStateException(cause, firstComponent, remainingComponents);
+        }
+
+        return new IllegalStateException(makeMessage(firstComponent, remainingComponents), cause);
+    }
+
     public static String makeMessage(final String firstComponent, final String... remainingComponents) {
         return streamOf(firstComponent, remainingComponents)
             .map(ObjectUtils::inspectUnmarked)
@@ -45,6 +111,36 @@ public class ExceptionUtils {
     }
 
     public static <R> R ignoreWhenException(final Class<? extends Exception> exceptionClass, final ExceptionalSupplier<R> action) {
+        return ignore(null, exceptionClass, action);
+    }
+
+    public static <R> R ignoreWhenException(final ExceptionalSupplier<R> action) {
+        return ignoreWhenException(null, action);
+    }
+
+    /**
+     * Same as {@link #ignoreWhenException(Class, ExceptionalSupplier)}, though
+     * the ignored exceptions get logged with the specified failure logger, so
+     * that repeated ones do not flood the log.
+     * <p>
+     * @param <R>
+     *     the type of an object to return, normally inferred automatically
+     * <p>
+     * @param failureLogger [{@link FailureLogger}]
+     *     the logger for ignored exceptions
+     * @param exceptionClass [{@link Class}{@code <? extends }{@link Exception}{@code >}]
+     *     the class of exceptions to ignore, {@code null} to ignore all
+     * @param action [{@link ExceptionalSupplier}{@code <R>}]
+     *     a code block to invoke
+     * <p>
+     * @return [{@code R}]
+     *     the object returned by the action, {@code null} when exception ignored
+    */
+    public static <R> R ignoreWhenException(final FailureLogger failureLogger, final Class<? extends Exception> exceptionClass, final ExceptionalSupplier<R> action) {
+        return ignore(failureLogger, exceptionClass, action);
+    }
+
+    private static <R> R ignore(final FailureLogger failureLogger, final Class<? extends Exception> exceptionClass, final ExceptionalSupplier<R> action) {
         try {
             return action.get();
         }
@@ -52,15 +148,15 @@ public class ExceptionUtils {
             if (exceptionClass != null && exceptionClass.isInstance(exception) == false) {
                 throw runtimeExceptionUnlessAlready(exception);
             }
+
+            if (failureLogger != null) {
+                failureLogger.info(exception, "Ignored exception: {}: {}", exception.getClass().getName(), exception.getMessage());
+            }
         }
 
         return null;
     }
 
-    public static <R> R ignoreWhenException(final ExceptionalSupplier<R> action) {
-        return ignoreWhenException(null, action);
-    }
-
     public static void ignoreWhenException(final Class<? extends Exception> exceptionClass, final ExceptionalRunnable... actions) {
         for (final ExceptionalRunnable action : actions) {
             if (action == null) {
@@ -77,4 +173,61 @@ public class ExceptionUtils {
     public static void ignoreWhenException(final ExceptionalRunnable... actions) {
         ignoreWhenException(null, actions);
     }
+
+    /**
+     * Concurrent version of {@link #ignoreWhenException(Class, ExceptionalRunnable...)}.
+     * The actions run on {@link ConcurrencyUtils#defaultExecutor()}, no more than
+     * the specified number at a time, and are waited for no longer than the
+     * timeout, with the ones still running at the deadline cancelled.
+     * <p>
+     * Unlike the sequential version, all the actions get run even when some of
+     * them fail. The exceptions not matching the exception class, along with
+     * a {@link TimeoutException} for each action cancelled or skipped at the
+     * deadline, are then attached as suppressed to a single runtime exception
+     * thrown from this method. A {@link TimeoutException} thrown by an action
+     * itself is filtered like any other exception.
+     * <p>
+     * @param exceptionClass [{@link Class}{@code <? extends }{@link Exception}{@code >}]
+     *     the class of exceptions to ignore, {@code null} to ignore all but
+     *     the expired deadlines
+     * @param maxConcurrency [{@code int}]
+     *     the maximum number of actions to run at a time
+     * @param timeout [{@link Duration}]
+     *     the time to wait for all the actions to complete
+     * @param actions [{@link ExceptionalRunnable}{@code ...}]
+     *     the actions to run, {@code null} ones skipped
+    */
+    public static void ignoreWhenExceptionConcurrently(final Class<? extends Exception> exceptionClass, final int maxConcurrency, final Duration timeout, final ExceptionalRunnable... actions) {
+        final List<ExceptionalSupplier<Object>> suppliers = new ArrayList<>();
+
+        for (final ExceptionalRunnable action : actions) {
+            if (action != null) {
+                suppliers.add(() -> {
+                    action.run();
+                    return null;
+                });
+            }
+        }
+
+        final List<Exception> failures = HolderBatch.evaluate(suppliers, maxConcurrency, timeout, ConcurrencyUtils.defaultExecutor())
+            .exceptions().stream()
+            .filter(exception -> exception instanceof HolderBatch.DeadlineExpiredException || (exceptionClass != null && exceptionClass.isInstance(exception) == false))
+            .collect(toList());
+
+        if (failures.isEmpty() == true) {
+            return;
+        }
+
+        final String count = String.valueOf(failures.size());
+        final RuntimeException aggregate = stackless
+            ? new StacklessRuntimeException(null, "Concurrent actions failed", count)
+            : new RuntimeException(makeMessage("Concurrent actions failed", count));
+
+        failures.forEach(aggregate::addSuppressed);
+        throw aggregate;
+    }
+
+    public static void ignoreWhenExceptionConcurrently(final int maxConcurrency, final Duration timeout, final ExceptionalRunnable... actions) {
+        ignoreWhenExceptionConcurrently(null, maxConcurrency, timeout, actions);
+    }
 }
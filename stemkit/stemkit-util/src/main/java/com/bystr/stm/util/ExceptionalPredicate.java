@@ -0,0 +1,14 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+@FunctionalInterface
+public interface ExceptionalPredicate<T> {
+    boolean test(final T object) throws Exception;
+}
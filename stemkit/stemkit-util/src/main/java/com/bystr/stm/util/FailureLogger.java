@@ -0,0 +1,302 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+
+/**
+ * Logs failures on hot error paths in a rate-limited, deduplicated manner.
+ * Each failure is fingerprinted by its exception class and the message
+ * template, the latter normally being a constant unique to the call site,
+ * and optionally by a site, for a call site shared among several sources
+ * of failures, such as the services a client talks to. The first
+ * occurrences of a fingerprint in each summary interval get logged as is,
+ * the rest only get counted and reported in a summary line once the
+ * interval is over, at the level of the failures.
+ * <p>
+ * The summaries are only logged as failures go through the logger, so once
+ * a burst of failures stops, its last count gets reported along with any
+ * failure logged after the summary interval, or on {@link #flush()}.
+ * <p>
+ * The hot path is lock-free: once a fingerprint is known, a failure costs a
+ * map lookup and a couple of atomic increments. The number of fingerprints
+ * is expected to stay small, so do not make templates or sites from
+ * variable data.
+ * <p>
+ * Example:
+ * <pre>
+ * private static final FailureLogger failureLogger = new FailureLogger(logger);
+ * ...
+ * failureLogger.info(exception, "{}: Lookup failed: {}", label, exception.getMessage());
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class FailureLogger {
+    public static final int DEFAULT_LIMIT = 10;
+    public static final Duration DEFAULT_SUMMARY_INTERVAL = Duration.ofMinutes(1);
+
+    private final Logger _logger;
+    private final long _limit;
+    private final Duration _summaryInterval;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Occurrences>> _occurrences = new ConcurrentHashMap<>();
+    private final AtomicLong _flushDue;
+
+    public FailureLogger(final Logger logger) {
+        this(logger, DEFAULT_LIMIT, DEFAULT_SUMMARY_INTERVAL);
+    }
+
+    /**
+     * Constructs a failure logger on top of the specified logger.
+     * <p>
+     * @param logger [{@link Logger}]
+     *     the logger to log to
+     * @param limit [{@code int}]
+     *     the number of occurrences of each failure to log as is per
+     *     summary interval
+     * @param summaryInterval [{@link Duration}]
+     *     the minimal interval between summaries of the occurrences not logged
+    */
+    public FailureLogger(final Logger logger, final int limit, final Duration summaryInterval) {
+        _logger = logger;
+        _limit = limit;
+        _summaryInterval = summaryInterval;
+        _flushDue = new AtomicLong(System.nanoTime() + summaryInterval.toNanos());
+    }
+
+    /**
+     * Logs a failure at info level, unless its fingerprint has been already
+     * logged the limit number of times in the current summary interval.
+     * <p>
+     * @param exception [{@link Throwable}]
+     *     the failure, only its class taken for the fingerprint
+     * @param template [{@link String}]
+     *     the message template in {@link Logger} format
+     * @param arguments [{@link Object}{@code ...}]
+     *     the message arguments
+     * <p>
+     * @return [{@code boolean}]
+     *     {@code true} if the message has been logged, so that any related
+     *     details could be logged as well
+    */
+    public boolean info(final Throwable exception, final String template, final Object... arguments) {
+        return log(Level.INFO, null, exception, template, arguments);
+    }
+
+    public boolean warn(final Throwable exception, final String template, final Object... arguments) {
+        return log(Level.WARN, null, exception, template, arguments);
+    }
+
+    /**
+     * Same as {@link #info(Throwable, String, Object...)}, though failures
+     * from different sites get fingerprinted apart even when the exception
+     * class and the template are the same.
+     * <p>
+     * @param site [{@link String}]
+     *     the site of the failure, such as the service that failed
+     * @param exception [{@link Throwable}]
+     *     the failure, only its class taken for the fingerprint
+     * @param template [{@link String}]
+     *     the message template in {@link Logger} format
+     * @param arguments [{@link Object}{@code ...}]
+     *     the message arguments
+     * <p>
+     * @return [{@code boolean}]
+     *     {@code true} if the message has been logged
+    */
+    public boolean infoAt(final String site, final Throwable exception, final String template, final Object... arguments) {
+        return log(Level.INFO, site, exception, template, arguments);
+    }
+
+    public boolean warnAt(final String site, final Throwable exception, final String template, final Object... arguments) {
+        return log(Level.WARN, site, exception, template, arguments);
+    }
+
+    /**
+     * Returns the total number of occurrences of a failure, logged or not,
+     * including the ones at a level not enabled in the logger.
+     * <p>
+     * @param exceptionClass [{@link Class}{@code <?>}]
+     *     the failure class
+     * @param template [{@link String}]
+     *     the message template
+     * <p>
+     * @return [{@code long}]
+     *     the number of occurrences so far
+    */
+    public long occurrences(final Class<?> exceptionClass, final String template) {
+        return occurrencesAt(null, exceptionClass, template);
+    }
+
+    public long occurrencesAt(final String site, final Class<?> exceptionClass, final String template) {
+        final ConcurrentMap<String, Occurrences> templates = _occurrences.get(exceptionClass == null ? Void.class : exceptionClass);
+        final Occurrences occurrences = templates == null ? null : templates.get(key(site, template));
+
+        return occurrences == null ? 0 : occurrences.total.sum();
+    }
+
+    /**
+     * Logs the summaries of all the occurrences not logged nor reported yet,
+     * regardless of the summary interval, e.g. on shutdown.
+    */
+    public void flush() {
+        _occurrences.forEach((exceptionClass, templates) -> templates.forEach((key, occurrences) -> {
+            occurrences.summaryDue.set(System.nanoTime() + _summaryInterval.toNanos());
+            summarize(exceptionClass, occurrences);
+        }));
+    }
+
+    private boolean log(final Level level, final String site, final Throwable exception, final String template, final Object... arguments) {
+        final Class<?> exceptionClass = exception == null ? Void.class : exception.getClass();
+        final Occurrences occurrences = occurrencesOf(exceptionClass, key(site, template), level);
+
+        occurrences.total.increment();
+
+        if (level.isEnabled(_logger) == false) {
+            return false;
+        }
+
+        final boolean logged = register(exceptionClass, occurrences);
+
+        if (logged == true) {
+            level.log(_logger, template, arguments);
+        }
+
+        flushIfDue();
+        return logged;
+    }
+
+    private boolean register(final Class<?> exceptionClass, final Occurrences occurrences) {
+        final long now = System.nanoTime();
+        final long summaryDue = occurrences.summaryDue.get();
+
+        if (now - summaryDue >= 0 && occurrences.summaryDue.compareAndSet(summaryDue, now + _summaryInterval.toNanos()) == true) {
+            summarize(exceptionClass, occurrences);
+        }
+
+        if (occurrences.logged.incrementAndGet() <= _limit) {
+            return true;
+        }
+
+        occurrences.suppressed.increment();
+        return false;
+    }
+
+    // Reports the occurrences of the fingerprints that stopped occurring
+    // with counts still pending, at most once per summary interval.
+    //
+    private void flushIfDue() {
+        final long now = System.nanoTime();
+        final long flushDue = _flushDue.get();
+
+        if (now - flushDue < 0 || _flushDue.compareAndSet(flushDue, now + _summaryInterval.toNanos()) == false) {
+            return;
+        }
+
+        _occurrences.forEach((exceptionClass, templates) -> templates.forEach((key, occurrences) -> {
+            final long summaryDue = occurrences.summaryDue.get();
+
+            if (now - summaryDue >= 0 && occurrences.summaryDue.compareAndSet(summaryDue, now + _summaryInterval.toNanos()) == true) {
+                summarize(exceptionClass, occurrences);
+            }
+        }));
+    }
+
+    // Ends the current interval of the occurrences, so that the next ones
+    // get logged as is again up to the limit.
+    //
+    private void summarize(final Class<?> exceptionClass, final Occurrences occurrences) {
+        occurrences.logged.set(0);
+
+        final long count = occurrences.suppressed.sumThenReset();
+
+        if (count > 0) {
+            occurrences.level.log(_logger, "Repeated failure: {} more times in {}: {}: {}",
+                count, _summaryInterval, exceptionClass == Void.class ? null : exceptionClass.getName(), occurrences.key
+            );
+        }
+    }
+
+    private Occurrences occurrencesOf(final Class<?> exceptionClass, final String key, final Level level) {
+        // Looking up first, as computeIfAbsent() locks even when the key is
+        // already there on some Java versions.
+        //
+        ConcurrentMap<String, Occurrences> templates = _occurrences.get(exceptionClass);
+
+        if (templates == null) {
+            templates = _occurrences.computeIfAbsent(exceptionClass, ignored -> new ConcurrentHashMap<>());
+        }
+
+        Occurrences occurrences = templates.get(key);
+
+        if (occurrences == null) {
+            occurrences = templates.computeIfAbsent(key, ignored -> new Occurrences(key, _summaryInterval));
+        }
+
+        if (occurrences.level != level) {
+            occurrences.level = level;
+        }
+
+        return occurrences;
+    }
+
+    private static String key(final String site, final String template) {
+        return site == null ? template : site + ": " + template;
+    }
+
+    private enum Level {
+        INFO {
+            @Override
+            boolean isEnabled(final Logger logger) {
+                return logger.isInfoEnabled();
+            }
+
+            @Override
+            void log(final Logger logger, final String template, final Object... arguments) {
+                logger.info(template, arguments);
+            }
+        },
+        WARN {
+            @Override
+            boolean isEnabled(final Logger logger) {
+                return logger.isWarnEnabled();
+            }
+
+            @Override
+            void log(final Logger logger, final String template, final Object... arguments) {
+                logger.warn(template, arguments);
+            }
+        };
+
+        abstract boolean isEnabled(final Logger logger);
+        abstract void log(final Logger logger, final String template, final Object... arguments);
+    }
+
+    private static final class Occurrences {
+        final String key;
+        final LongAdder total = new LongAdder();
+        final AtomicLong logged = new AtomicLong();
+        final LongAdder suppressed = new LongAdder();
+        final AtomicLong summaryDue;
+
+        // The level of the latest failure, for the summaries to be logged at.
+        //
+        volatile Level level;
+
+        Occurrences(final String key, final Duration summaryInterval) {
+            this.key = key;
+            summaryDue = new AtomicLong(System.nanoTime() + summaryInterval.toNanos());
+        }
+    }
+}
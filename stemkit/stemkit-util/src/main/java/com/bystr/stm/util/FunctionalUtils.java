@@ -11,9 +11,12 @@ package com.bystr.stm.util;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
+import java.util.function.Function;
 
 public final class FunctionalUtils {
     private FunctionalUtils() {}
@@ -26,6 +29,91 @@ public final class FunctionalUtils {
         return (property, value) -> consumer.accept(property, value == null || value.isEmpty() ? null : value.get(0));
     }
 
+    /**
+     * Returns a function caching the results of the specified one, bounded
+     * and expired according to the options. See {@link Memoized} for the
+     * eviction policy.
+     * <p>
+     * @param function [{@link ExceptionalFunction}{@code <K, V>}]
+     *     the function to cache the results of
+     * @param memoization [{@link Memoization}]
+     *     the caching options
+     * <p>
+     * @return [{@link Memoized}{@code <K, V>}]
+     *     the caching function, also providing the statistics
+    */
+    public static <K, V> Memoized<K, V> memoize(final ExceptionalFunction<? super K, ? extends V> function, final Memoization memoization) {
+        return new Memoized<>(function, memoization);
+    }
+
+    /**
+     * Same as {@link #memoize(ExceptionalFunction, Memoization)} for a plain
+     * {@link Function} at hand, e.g. one composed or passed around as such.
+     * It is not an overload of the latter, as that would make any lambda
+     * or method reference argument ambiguous.
+     * <p>
+     * @param function [{@link Function}{@code <K, V>}]
+     *     the function to cache the results of
+     * @param memoization [{@link Memoization}]
+     *     the caching options
+     * <p>
+     * @return [{@link Memoized}{@code <K, V>}]
+     *     the caching function, also providing the statistics
+    */
+    public static <K, V> Memoized<K, V> memoizeFunction(final Function<? super K, ? extends V> function, final Memoization memoization) {
+        return memoize(function::apply, memoization);
+    }
+
+    /**
+     * Returns a single key function gathering concurrent calls into calls of
+     * the specified bulk function, to make one round trip for many keys. A
+     * bulk call is made once the distinct keys fill up a batch, or once the
+     * delay expires since the first key in the batch, on the thread of that
+     * first caller. Each caller gets the result for its own key, or the
+     * exception of the bulk call, rethrown as a runtime one.
+     * <p>
+     * Example:
+     * <pre>
+     * final Function{@code <}Long, User{@code >} users = batching(userDao::findAllById, 100, Duration.ofMillis(2));
+     * </pre>
+     * @param function [{@link ExceptionalFunction}{@code <List<K>, Map<K, V>>}]
+     *     the bulk function, returning the results by key; keys missing
+     *     from the map get {@code null}
+     * @param maxBatch [{@code int}]
+     *     the maximum number of distinct keys in a bulk call
+     * @param maxDelay [{@link Duration}]
+     *     the maximum time for the first caller in a batch to wait for more
+     * <p>
+     * @return [{@link Function}{@code <K, V>}]
+     *     the single key function
+    */
+    public static <K, V> Function<K, V> batching(final ExceptionalFunction<? super List<K>, ? extends Map<K, ? extends V>> function, final int maxBatch, final Duration maxDelay) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+
+        return new Batcher<>(function, maxBatch, maxDelay);
+    }
+
+    /**
+     * Returns a function running at most one call of the specified one per
+     * key at a time. Callers coming for a key while a call for it is in
+     * progress wait for that call and share its result, or its exception
+     * rethrown as a runtime one. Nothing is kept once a call completes, so
+     * this protects an expensive loader from a stampede when a hot key
+     * expires elsewhere, e.g. in a cache from
+     * {@link #memoize(ExceptionalFunction, Memoization)}.
+     * <p>
+     * @param function [{@link ExceptionalFunction}{@code <K, V>}]
+     *     the function to deduplicate concurrent calls of
+     * <p>
+     * @return [{@link Function}{@code <K, V>}]
+     *     the deduplicating function
+    */
+    public static <K, V> Function<K, V> singleFlight(final ExceptionalFunction<? super K, ? extends V> function) {
+        return new SingleFlight<>(function);
+    }
+
     public static <U> BinaryOperator<U> illegalStateCombiner() {
         return (first, second) -> {
             throw new IllegalStateException("Unexpected combiner invocation");
@@ -9,11 +9,20 @@
 package com.bystr.stm.util;
 
 import static com.bystr.stm.util.ExceptionUtils.forceRuntimeWhenException;
+import static com.bystr.stm.util.ExceptionUtils.illegalStateException;
 import static com.bystr.stm.util.ExceptionUtils.makeMessage;
 import static com.bystr.stm.util.StreamUtils.streamOf;
 import static java.util.stream.Collectors.joining;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -171,6 +180,58 @@ public class Holder<T> {
         return this;
     }
 
+    /**
+     * Same as {@link #acceptFrom(ExceptionalSupplier)}, though the supplier runs
+     * on the specified executor and is waited for no longer than the timeout.
+     * When the deadline expires, the supplier gets cancelled (interrupted) and
+     * a {@link TimeoutException} is kept instead of the value. Expired deadlines
+     * are counted in {@link DeadlineStatistics}.
+     * <p>
+     * @param supplier [{@link ExceptionalSupplier}{@code <T>}]
+     *     a code block to produce the value
+     * @param timeout [{@link Duration}]
+     *     the time to wait for the supplier to complete
+     * @param executor [{@link Executor}]
+     *     the executor to run the supplier on
+     * <p>
+     * @return [{@link Holder}{@code <T>}]
+     *     this holder
+    */
+    public Holder<T> acceptFrom(final ExceptionalSupplier<T> supplier, final Duration timeout, final Executor executor) {
+        final FutureTask<T> task = new FutureTask<>(supplier::get);
+
+        DeadlineStatistics.countEvaluation();
+
+        return acceptFrom(() -> {
+            executor.execute(task);
+
+            try {
+                return task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            catch (final ExecutionException exception) {
+                final Throwable cause = exception.getCause();
+
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw (Exception) cause;
+            }
+            catch (final TimeoutException exception) {
+                task.cancel(true);
+                DeadlineStatistics.countExpiration();
+
+                throw new TimeoutException(makeMessage("Deadline expired", timeout.toString()));
+            }
+            catch (final InterruptedException exception) {
+                task.cancel(true);
+                Thread.currentThread().interrupt();
+
+                throw exception;
+            }
+        });
+    }
+
     private final Holder<T> thisHolder() {
         return this;
     }
@@ -468,8 +529,44 @@ public class Holder<T> {
         });
     }
 
+    public static <R> Holder<R> holdFrom(final ExceptionalSupplier<R> supplier, final Duration timeout) {
+        return holdFrom(supplier, timeout, ConcurrencyUtils.defaultExecutor());
+    }
+
+    public static <R> Holder<R> holdFrom(final ExceptionalSupplier<R> supplier, final Duration timeout, final Executor executor) {
+        return (new Holder<R>()).acceptFrom(supplier, timeout, executor);
+    }
+
+    public static <R> AsyncHolder<R> holdAsync(final ExceptionalSupplier<R> supplier, final Executor executor) {
+        return AsyncHolder.supply(supplier, executor);
+    }
+
+    public static <R> AsyncHolder<R> holdAsync(final ExceptionalSupplier<R> supplier) {
+        return holdAsync(supplier, ConcurrencyUtils.defaultExecutor());
+    }
+
+    public static <R> HolderBatch<R> holdAll(final Collection<? extends ExceptionalSupplier<R>> suppliers) {
+        return holdAll(suppliers, ForkJoinPool.getCommonPoolParallelism() + 1, ForkJoinPool.commonPool());
+    }
+
+    public static <R> HolderBatch<R> holdAll(final Collection<? extends ExceptionalSupplier<R>> suppliers, final int maxConcurrency) {
+        return holdAll(suppliers, maxConcurrency, ConcurrencyUtils.defaultExecutor());
+    }
+
+    public static <R> HolderBatch<R> holdAll(final Collection<? extends ExceptionalSupplier<R>> suppliers, final int maxConcurrency, final Executor executor) {
+        return HolderBatch.evaluate(suppliers, maxConcurrency, executor);
+    }
+
+    public static <R> LazyHolder<R> holdLazily(final ExceptionalSupplier<R> supplier) {
+        return new LazyHolder<>(supplier, null);
+    }
+
+    public static <R> LazyHolder<R> holdLazily(final ExceptionalSupplier<R> supplier, final Duration ttl) {
+        return new LazyHolder<>(supplier, ttl);
+    }
+
     private RuntimeException illegalState(final String... components) {
-        return new IllegalStateException(makeMessage(this.getClass().getName(), components), _exception);
+        return illegalStateException(_exception, this.getClass().getName(), components);
     }
 
     private static String classNames(final Class<?> firstClass, final Class<?>... otherClasses) {
@@ -0,0 +1,295 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.ExceptionUtils.makeMessage;
+import static com.bystr.stm.util.Holder.holdFrom;
+import static java.util.Collections.unmodifiableList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the outcomes of many independent suppliers evaluated together, normally
+ * with {@link Holder#holdAll(Collection)}. There is one {@link Holder} per
+ * supplier, in the order the suppliers have been specified in.
+ * <p>
+ * Example:
+ * <pre>
+ * final List{@code <}User{@code >} users = holdAll(loaders, 32)
+ *     .then(holder {@code ->} holder.whenException(NotFoundException.class).thenIgnore())
+ *     .values();
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class HolderBatch<T> {
+    private final List<Holder<T>> _holders;
+
+    HolderBatch(final List<Holder<T>> holders) {
+        _holders = unmodifiableList(holders);
+    }
+
+    static <R> HolderBatch<R> evaluate(final Collection<? extends ExceptionalSupplier<R>> suppliers, final int maxConcurrency, final Executor executor) {
+        final Evaluation<R> evaluation = new Evaluation<>(suppliers, maxConcurrency);
+
+        // The calling thread works too, so that the batch completes even when
+        // the executor is saturated or rejects some of the workers.
+        //
+        for (int count = evaluation.workers() - 1; count > 0; --count) {
+            try {
+                executor.execute(evaluation::work);
+            }
+            catch (final RejectedExecutionException exception) {
+                break;
+            }
+        }
+
+        evaluation.work();
+        awaitUninterruptibly(evaluation.completion);
+
+        return evaluation.batch(null);
+    }
+
+    /**
+     * Same as {@link #evaluate(Collection, int, Executor)}, though the calling
+     * thread only waits for the suppliers no longer than the timeout. When the
+     * deadline expires, the running suppliers get cancelled (interrupted), the
+     * ones not started yet get skipped, and their holders get a
+     * {@link DeadlineExpiredException}, telling them apart from a
+     * {@link TimeoutException} thrown by a supplier itself.
+    */
+    static <R> HolderBatch<R> evaluate(final Collection<? extends ExceptionalSupplier<R>> suppliers, final int maxConcurrency, final Duration timeout, final ExecutorService executor) {
+        final Evaluation<R> evaluation = new Evaluation<>(suppliers, maxConcurrency);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int count = evaluation.workers(); count > 0; --count) {
+            try {
+                futures.add(executor.submit(evaluation::work));
+            }
+            catch (final RejectedExecutionException exception) {
+                if (futures.isEmpty() == true) {
+                    return evaluation.batch(exception);
+                }
+
+                break;
+            }
+        }
+
+        if (awaitUninterruptibly(evaluation.completion, timeout) == true) {
+            return evaluation.batch(null);
+        }
+
+        evaluation.cancelled = true;
+
+        try {
+            return evaluation.batch(new DeadlineExpiredException(timeout));
+        }
+        finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    static final class DeadlineExpiredException extends TimeoutException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExpiredException(final Duration timeout) {
+            super(makeMessage("Deadline expired", timeout.toString()));
+        }
+    }
+
+    private static final class Evaluation<R> {
+        final List<ExceptionalSupplier<R>> tasks;
+        final AtomicReferenceArray<Holder<R>> results;
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final CountDownLatch completion;
+        final int maxConcurrency;
+
+        // Errors are not kept by holders, so the first one gets rethrown in
+        // place of the batch once all the suppliers are done.
+        //
+        final AtomicReference<Error> error = new AtomicReference<>();
+
+        volatile boolean cancelled = false;
+
+        Evaluation(final Collection<? extends ExceptionalSupplier<R>> suppliers, final int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrency);
+            }
+
+            this.tasks = new ArrayList<>(suppliers);
+            this.results = new AtomicReferenceArray<>(tasks.size());
+            this.completion = new CountDownLatch(tasks.size());
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        int workers() {
+            return Math.min(maxConcurrency, tasks.size());
+        }
+
+        void work() {
+            for (int index = nextIndex.getAndIncrement(); index < tasks.size() && cancelled == false; index = nextIndex.getAndIncrement()) {
+                try {
+                    results.set(index, holdFrom(tasks.get(index)));
+                }
+                catch (final Error exception) {
+                    error.compareAndSet(null, exception);
+                }
+                finally {
+                    completion.countDown();
+                }
+            }
+        }
+
+        HolderBatch<R> batch(final Exception missingException) {
+            if (error.get() != null) {
+                throw error.get();
+            }
+
+            final List<Holder<R>> holders = new ArrayList<>(tasks.size());
+
+            for (int index = 0; index < tasks.size(); ++index) {
+                final Holder<R> holder = results.get(index);
+                holders.add(holder == null ? new Holder<R>().setException(missingException) : holder);
+            }
+
+            return new HolderBatch<>(holders);
+        }
+    }
+
+    /**
+     * Returns the holders with the outcome of each supplier, in the order the
+     * suppliers have been specified in.
+     * <p>
+     * @return [{@link List}{@code <}{@link Holder}{@code <T>>}]
+     *     an unmodifiable list of holders
+    */
+    public List<Holder<T>> holders() {
+        return _holders;
+    }
+
+    /**
+     * Returns the values produced by the suppliers that succeeded, skipping
+     * the empty holders and the ones with exceptions, preserving the order.
+     * <p>
+     * @return [{@link List}{@code <T>}]
+     *     a new list of values
+    */
+    public List<T> values() {
+        final List<T> values = new ArrayList<>();
+
+        for (final Holder<T> holder : _holders) {
+            if (holder.hasValue() == true) {
+                values.add(holder.get());
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns the exceptions thrown by the suppliers that failed, preserving
+     * the order.
+     * <p>
+     * @return [{@link List}{@code <}{@link Exception}{@code >}]
+     *     a new list of exceptions
+    */
+    public List<Exception> exceptions() {
+        final List<Exception> exceptions = new ArrayList<>();
+
+        for (final Holder<T> holder : _holders) {
+            if (holder.hasException() == true) {
+                exceptions.add(holder.exception());
+            }
+        }
+
+        return exceptions;
+    }
+
+    public boolean hasExceptions() {
+        return _holders.stream().anyMatch(Holder::hasException);
+    }
+
+    public int size() {
+        return _holders.size();
+    }
+
+    /**
+     * Applies a processing stage to each holder in the batch, normally a chain
+     * of {@code whenException()}, {@code whenEmpty()} and similar calls
+     * returning that holder. The holder returned by the stage replaces the
+     * original one.
+     * <p>
+     * @param stage [{@link UnaryOperator}{@code <}{@link Holder}{@code <T>>}]
+     *     a code block to process each holder
+     * <p>
+     * @return [{@link HolderBatch}{@code <T>}]
+     *     a new batch with the processed holders
+    */
+    public HolderBatch<T> then(final UnaryOperator<Holder<T>> stage) {
+        final List<Holder<T>> holders = new ArrayList<>(_holders.size());
+
+        for (final Holder<T> holder : _holders) {
+            holders.add(stage.apply(holder));
+        }
+
+        return new HolderBatch<>(holders);
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                latch.await();
+                break;
+            }
+            catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted == true) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean awaitUninterruptibly(final CountDownLatch latch, final Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                catch (final InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted == true) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
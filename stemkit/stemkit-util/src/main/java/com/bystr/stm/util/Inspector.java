@@ -0,0 +1,785 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static org.apache.commons.text.StringEscapeUtils.ESCAPE_JAVA;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+/**
+ * Produces the same human readable representation of objects, strings,
+ * collections and maps as the {@code inspect()} family of {@link ObjectUtils},
+ * writing it straight into an {@link Appendable} (a {@link StringBuilder},
+ * a {@link Writer}, a logger buffer, etc.) without intermediate strings.
+ * <p>
+ * An inspector may limit the number of elements shown for each collection or
+ * map, the nesting depth, the length of each string and the total length of
+ * the output, with anything left out marked by an ellipsis ({@code ...}).
+ * Inspectors are immutable, so a configured one may be kept in a constant and
+ * shared.
+ * <p>
+ * Nested collections and maps are walked iteratively, so even a very deep
+ * structure cannot overflow the stack, and a container found inside itself
+ * is shown as a back-reference like {@code <cycle:HashMap>}. Containers
+ * past the depth to inspect at are shown by their type and size only, like
+ * {@code <ArrayList:size=2>}, never by their {@code toString()}. Together with
+ * the limits of {@link #bounded()} this makes deep inspection safe for
+ * arbitrary production data.
+ * <p>
+ * Example:
+ * <pre>
+ * private static final Inspector inspector = Inspector.unlimited()
+ *     .withMaxElements(20)
+ *     .withMaxStringLength(80)
+ *     .withMaxLength(4096);
+ * ...
+ * logger.info(inspector.deepInspectTo(new StringBuilder("Got: "), 2, items).toString());
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class Inspector {
+    private static final String ELLIPSIS = "...";
+    private static final Inspector UNLIMITED = new Inspector(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+    private static final Inspector BOUNDED = new Inspector(100, 32, 1000, 64 * 1024);
+
+    private final int _maxElements;
+    private final int _maxDepth;
+    private final int _maxStringLength;
+    private final long _maxLength;
+
+    private Inspector(final int maxElements, final int maxDepth, final int maxStringLength, final long maxLength) {
+        _maxElements = maxElements;
+        _maxDepth = maxDepth;
+        _maxStringLength = maxStringLength;
+        _maxLength = maxLength;
+    }
+
+    /**
+     * Returns an inspector with no limits, producing exactly the same output
+     * as the {@code inspect()} family of {@link ObjectUtils}.
+     * <p>
+     * @return [{@link Inspector}]
+     *     the shared unlimited inspector
+    */
+    public static Inspector unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Returns an inspector with the limits reasonable for logging arbitrary
+     * data: 100 elements per container, 32 levels of nesting, 1000 characters
+     * per string and 64K characters in total.
+     * <p>
+     * @return [{@link Inspector}]
+     *     the shared bounded inspector
+    */
+    public static Inspector bounded() {
+        return BOUNDED;
+    }
+
+    public Inspector withMaxElements(final int maxElements) {
+        return new Inspector(maxElements, _maxDepth, _maxStringLength, _maxLength);
+    }
+
+    /**
+     * Returns an inspector that expands no more than the specified number of
+     * levels of containers nested in the inspected one, regardless of the
+     * depth requested for deep inspection. Deeper containers are summarized
+     * like {@code [3: ...]}.
+     * <p>
+     * @param maxDepth [{@code int}]
+     *     the number of nested levels to expand
+     * <p>
+     * @return [{@link Inspector}]
+     *     a new inspector with the limit set
+    */
+    public Inspector withMaxDepth(final int maxDepth) {
+        return new Inspector(_maxElements, maxDepth, _maxStringLength, _maxLength);
+    }
+
+    public Inspector withMaxStringLength(final int maxStringLength) {
+        return new Inspector(_maxElements, _maxDepth, maxStringLength, _maxLength);
+    }
+
+    public Inspector withMaxLength(final long maxLength) {
+        return new Inspector(_maxElements, _maxDepth, _maxStringLength, maxLength);
+    }
+
+    public <A extends Appendable> A inspectTo(final A appendable, final Object object) {
+        return perform(appendable, sink -> sink.object(object));
+    }
+
+    public <A extends Appendable> A inspectTo(final A appendable, final String string) {
+        return perform(appendable, sink -> sink.string(string));
+    }
+
+    public <A extends Appendable> A inspectTo(final A appendable, final Collection<?> collection) {
+        return deepInspectTo(appendable, 0, collection);
+    }
+
+    public <A extends Appendable> A inspectTo(final A appendable, final Map<?, ?> map) {
+        return deepInspectTo(appendable, 0, map);
+    }
+
+    public <A extends Appendable> A deepInspectTo(final A appendable, final int depth, final Collection<?> collection) {
+        return perform(appendable, sink -> sink.collection(depth, collection));
+    }
+
+    public <A extends Appendable> A deepInspectTo(final A appendable, final int depth, final Map<?, ?> map) {
+        return perform(appendable, sink -> sink.map(depth, map));
+    }
+
+    private <A extends Appendable> A perform(final A appendable, final Consumer<Sink> action) {
+        final Sink sink = new Sink(appendable);
+
+        try {
+            action.accept(sink);
+        }
+        catch (final Exhausted exhausted) {
+            // The output has been cut at the total length limit. Exhaustion
+            // of an outer inspection, e.g. one calling a type inspector that
+            // inspects nested objects on its own, is left for it to catch.
+            //
+            if (exhausted.sink != sink) {
+                throw exhausted;
+            }
+        }
+
+        return appendable;
+    }
+
+    // Returns the position to cut a sequence at no further than the one
+    // specified, backing off so as not to split a surrogate pair.
+    //
+    private static int cutAt(final CharSequence sequence, final int start, final int position) {
+        return position > start && Character.isHighSurrogate(sequence.charAt(position - 1)) == true ? position - 1 : position;
+    }
+
+    private static final class Exhausted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final transient Object sink;
+
+        Exhausted(final Object sink) {
+            super(null, null, false, false);
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Writes a representation of objects of some type, as registered with
+     * {@link Inspector#register(Class, TypeInspector)}.
+     * <p>
+     * @param <T>
+     *     the type of objects to inspect
+    */
+    @FunctionalInterface
+    public interface TypeInspector<T> {
+        /**
+         * Writes a representation of an object.
+         * <p>
+         * @param appendable [{@link Appendable}]
+         *     an appendable to write to, already subject to the length limit
+         * @param object [{@code T}]
+         *     an object to inspect, never {@code null}
+         * <p>
+         * @throws IOException
+         *     when the appendable fails
+        */
+        void inspectTo(Appendable appendable, T object) throws IOException;
+    }
+
+    /**
+     * Registers an inspector for objects of the specified type and its
+     * subtypes, used by all inspectors whenever such an object is met,
+     * including the ones in collections and maps. A type inspector for a
+     * class takes precedence over the ones for its superclasses, and those
+     * for its interfaces. Registering {@code null} removes a type inspector.
+     * <p>
+     * Dispatch is cached per class, so registering is expected to happen at
+     * startup rather than on every inspection.
+     * <p>
+     * Example:
+     * <pre>
+     * Inspector.register(Optional.class, (appendable, optional) -&gt;
+     *     ObjectUtils.inspectTo(appendable.append("Optional:"), optional.orElse(null))
+     * );
+     * </pre>
+     * @param <T>
+     *     the type of objects to inspect, normally inferred automatically
+     * <p>
+     * @param type [{@link Class}{@code <T>}]
+     *     the type of objects to inspect
+     * @param typeInspector [{@link TypeInspector}{@code <? super T>}]
+     *     the type inspector, or {@code null}
+    */
+    public static <T> void register(final Class<T> type, final TypeInspector<? super T> typeInspector) {
+        if (typeInspector == null) {
+            typeInspectors.remove(type);
+        }
+        else {
+            typeInspectors.put(type, typeInspector);
+        }
+
+        // A ClassValue cannot be cleared for all classes at once, so it gets
+        // replaced instead.
+        //
+        handlers = new Handlers();
+    }
+
+    /**
+     * Returns a type inspector that writes objects field by field, like
+     * {@code Person{name="Joe", age=42}}, for the types whose
+     * {@code toString()} is useless or expensive. Register it for the types
+     * of interest:
+     * <pre>
+     * Inspector.register(Person.class, Inspector.fields());
+     * </pre>
+     * Field values are treated the same way as map values, subject to the
+     * requested depth of deep inspection, cycle detection and all the limits,
+     * so an object nested deeper than the requested depth is summarized as
+     * {@code Person{...}}. The fields of each class, including inherited ones
+     * and excluding static and transient ones, are looked up once and read
+     * with cached method handles afterwards. Fields not accessible to this
+     * module are skipped.
+     * <p>
+     * @return [{@link TypeInspector}{@code <Object>}]
+     *     the structural type inspector
+    */
+    public static TypeInspector<Object> fields() {
+        return FIELDS;
+    }
+
+    private static final TypeInspector<Object> FIELDS = (appendable, object) -> {
+        UNLIMITED.perform(appendable, sink -> sink.walk(sink.new FieldsFrame(0, object)));
+    };
+
+    private static final ClassValue<List<FieldAccessor>> fieldAccessors = new ClassValue<List<FieldAccessor>>() {
+        @Override
+        protected List<FieldAccessor> computeValue(final Class<?> type) {
+            final List<FieldAccessor> accessors = new ArrayList<>();
+
+            for (final Field field : FieldUtils.getAllFieldsList(type)) {
+                if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0 || field.isSynthetic() == true) {
+                    continue;
+                }
+
+                try {
+                    field.setAccessible(true);
+                    accessors.add(new FieldAccessor(field.getName(), MethodHandles.lookup().unreflectGetter(field)));
+                }
+                catch (final IllegalAccessException | RuntimeException exception) {
+                    // Skipping the fields that cannot be made accessible.
+                }
+            }
+
+            return Collections.unmodifiableList(accessors);
+        }
+    };
+
+    private static final class FieldAccessor {
+        final String name;
+        private final MethodHandle _getter;
+
+        FieldAccessor(final String name, final MethodHandle getter) {
+            this.name = name;
+            _getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        }
+
+        Object get(final Object object) {
+            try {
+                return (Object) _getter.invokeExact(object);
+            }
+            catch (final RuntimeException | Error exception) {
+                throw exception;
+            }
+            catch (final Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        }
+    }
+
+    private static final class FieldsHandler extends Handler {
+        static final FieldsHandler INSTANCE = new FieldsHandler();
+
+        @Override
+        void object(final Sink sink, final Object object) {
+            sink.walk(sink.new FieldsFrame(0, object));
+        }
+
+        @Override
+        void element(final Sink sink, final int depth, final Object object) {
+            if (depth == 0) {
+                sink.summary(sink.new FieldsFrame(0, object));
+                return;
+            }
+
+            sink.enter(sink.new FieldsFrame(depth > 0 ? depth - 1 : depth, object));
+        }
+    }
+
+    private static final ConcurrentMap<Class<?>, TypeInspector<?>> typeInspectors = new ConcurrentHashMap<>();
+    private static volatile Handlers handlers = new Handlers();
+
+    private static final class Handlers extends ClassValue<Handler> {
+        @Override
+        protected Handler computeValue(final Class<?> type) {
+            for (Class<?> aClass = type; aClass != null; aClass = aClass.getSuperclass()) {
+                final TypeInspector<?> typeInspector = typeInspectors.get(aClass);
+
+                if (typeInspector != null) {
+                    return handlerFor(typeInspector);
+                }
+            }
+
+            for (final Class<?> anInterface : ClassUtils.getAllInterfaces(type)) {
+                final TypeInspector<?> typeInspector = typeInspectors.get(anInterface);
+
+                if (typeInspector != null) {
+                    return handlerFor(typeInspector);
+                }
+            }
+
+            if (String.class.isAssignableFrom(type) == true) {
+                return Handler.STRING;
+            }
+
+            if (Number.class.isAssignableFrom(type) == true) {
+                return Handler.LITERAL;
+            }
+
+            if (Collection.class.isAssignableFrom(type) == true) {
+                return Handler.COLLECTION;
+            }
+
+            if (Map.class.isAssignableFrom(type) == true) {
+                return Handler.MAP;
+            }
+
+            return Handler.PLAIN;
+        }
+
+        private static Handler handlerFor(final TypeInspector<?> typeInspector) {
+            return typeInspector == FIELDS ? FieldsHandler.INSTANCE : new CustomHandler(typeInspector);
+        }
+    }
+
+    // Decides how an object of a particular class is written, either on its
+    // own or as an element of a collection or a map.
+    //
+    private static class Handler {
+        static final Handler PLAIN = new Handler();
+
+        static final Handler LITERAL = new Handler() {
+            @Override
+            void object(final Sink sink, final Object object) {
+                sink.put(object.toString());
+            }
+        };
+
+        static final Handler STRING = new Handler() {
+            @Override
+            void element(final Sink sink, final int depth, final Object object) {
+                sink.string((String) object);
+            }
+        };
+
+        // Containers not walked, on their own or past the depth, only get
+        // their size written, as their toString() could be both huge and
+        // endlessly recursive when they contain each other.
+        //
+        static final Handler COLLECTION = new Handler() {
+            @Override
+            void object(final Sink sink, final Object object) {
+                sink.container(object, ((Collection<?>) object).size());
+            }
+
+            @Override
+            void element(final Sink sink, final int depth, final Object object) {
+                if (depth == 0) {
+                    object(sink, object);
+                    return;
+                }
+
+                sink.enter(sink.new CollectionFrame(depth > 0 ? depth - 1 : depth, (Collection<?>) object));
+            }
+        };
+
+        static final Handler MAP = new Handler() {
+            @Override
+            void object(final Sink sink, final Object object) {
+                sink.container(object, ((Map<?, ?>) object).size());
+            }
+
+            @Override
+            void element(final Sink sink, final int depth, final Object object) {
+                if (depth == 0) {
+                    object(sink, object);
+                    return;
+                }
+
+                sink.enter(sink.new MapFrame(depth > 0 ? depth - 1 : depth, (Map<?, ?>) object));
+            }
+        };
+
+        void object(final Sink sink, final Object object) {
+            sink.plain(object);
+        }
+
+        void element(final Sink sink, final int depth, final Object object) {
+            object(sink, object);
+        }
+    }
+
+    private static final class CustomHandler extends Handler {
+        private final TypeInspector<Object> _typeInspector;
+
+        @SuppressWarnings("unchecked")
+        CustomHandler(final TypeInspector<?> typeInspector) {
+            _typeInspector = (TypeInspector<Object>) typeInspector;
+        }
+
+        @Override
+        void object(final Sink sink, final Object object) {
+            try {
+                _typeInspector.inspectTo(sink, object);
+            }
+            catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    // Extends Writer, so that strings could be escaped right into it.
+    //
+    private final class Sink extends Writer {
+        private final Appendable _appendable;
+        private final Deque<Frame> _frames = new ArrayDeque<>();
+        private final Set<Object> _path = Collections.newSetFromMap(new IdentityHashMap<>());
+        private long _remaining = _maxLength;
+
+        Sink(final Appendable appendable) {
+            _appendable = appendable;
+        }
+
+        void object(final Object object) {
+            if (object == null) {
+                put("<null>");
+                return;
+            }
+
+            handlers.get(object.getClass()).object(this, object);
+        }
+
+        void plain(final Object object) {
+            put("<");
+            put(object.getClass().getSimpleName());
+            put(":");
+            putLimited(String.valueOf(object));
+            put(">");
+        }
+
+        void container(final Object container, final int size) {
+            if (_path.contains(container) == true) {
+                cycle(container);
+                return;
+            }
+
+            put("<");
+            put(container.getClass().getSimpleName());
+            put(":size=");
+            put(Integer.toString(size));
+            put(">");
+        }
+
+        void string(final String string) {
+            if (string == null) {
+                put("<null>");
+                return;
+            }
+
+            put("\"");
+
+            if (string.length() > _maxStringLength) {
+                escape(string.substring(0, cutAt(string, 0, _maxStringLength)));
+                put(ELLIPSIS);
+            }
+            else {
+                escape(string);
+            }
+
+            put("\"");
+        }
+
+        void element(final int depth, final Object object) {
+            if (object == null) {
+                put("<null>");
+                return;
+            }
+
+            handlers.get(object.getClass()).element(this, depth, object);
+        }
+
+        void collection(final int depth, final Collection<?> items) {
+            if (items == null) {
+                put("<null>");
+                return;
+            }
+
+            walk(new CollectionFrame(depth, items));
+        }
+
+        void map(final int depth, final Map<?, ?> items) {
+            if (items == null) {
+                put("<null>");
+                return;
+            }
+
+            walk(new MapFrame(depth, items));
+        }
+
+        // Nested containers are walked with an explicit stack rather than
+        // recursively, so that no structure could overflow the thread stack.
+        //
+        void walk(final Frame top) {
+            final int base = _frames.size();
+            enter(top);
+
+            while (_frames.size() > base) {
+                final Frame frame = _frames.peek();
+
+                if (frame.iterator.hasNext() == false) {
+                    leave(frame);
+                    continue;
+                }
+
+                if (frame.count > 0) {
+                    put(", ");
+                }
+
+                if (frame.count == _maxElements) {
+                    put(ELLIPSIS);
+                    leave(frame);
+                    continue;
+                }
+
+                ++frame.count;
+                frame.next();
+            }
+        }
+
+        void enter(final Frame frame) {
+            if (_path.contains(frame.container) == true) {
+                cycle(frame.container);
+                return;
+            }
+
+            if (_frames.size() > _maxDepth) {
+                summary(frame);
+                return;
+            }
+
+            open(frame);
+
+            _path.add(frame.container);
+            _frames.push(frame);
+        }
+
+        private void cycle(final Object container) {
+            put("<cycle:");
+            put(container.getClass().getSimpleName());
+            put(">");
+        }
+
+        void summary(final Frame frame) {
+            open(frame);
+
+            put(ELLIPSIS);
+            put(frame.closing);
+        }
+
+        private void open(final Frame frame) {
+            put(frame.opening);
+
+            if (frame.size >= 2) {
+                put(Integer.toString(frame.size));
+                put(": ");
+            }
+        }
+
+        private void leave(final Frame frame) {
+            put(frame.closing);
+
+            _frames.pop();
+            _path.remove(frame.container);
+        }
+
+        private abstract class Frame {
+            final int depth;
+            final Object container;
+            final int size;
+            final Iterator<?> iterator;
+            final String opening;
+            final String closing;
+            int count;
+
+            Frame(final int depth, final Object container, final int size, final Iterator<?> iterator, final String opening, final String closing) {
+                this.depth = depth;
+                this.container = container;
+                this.size = size;
+                this.iterator = iterator;
+                this.opening = opening;
+                this.closing = closing;
+            }
+
+            abstract void next();
+        }
+
+        final class CollectionFrame extends Frame {
+            CollectionFrame(final int depth, final Collection<?> items) {
+                super(depth, items, items.size(), items.iterator(), "[", "]");
+            }
+
+            @Override
+            void next() {
+                element(depth, iterator.next());
+            }
+        }
+
+        final class MapFrame extends Frame {
+            MapFrame(final int depth, final Map<?, ?> items) {
+                super(depth, items, items.size(), items.entrySet().iterator(), "{", "}");
+            }
+
+            @Override
+            void next() {
+                final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) iterator.next();
+
+                element(0, entry.getKey());
+                put("=>");
+                element(depth, entry.getValue());
+            }
+        }
+
+        final class FieldsFrame extends Frame {
+            FieldsFrame(final int depth, final Object object) {
+                super(depth, object, 0, fieldAccessors.get(object.getClass()).iterator(), object.getClass().getSimpleName() + "{", "}");
+            }
+
+            @Override
+            void next() {
+                final FieldAccessor accessor = (FieldAccessor) iterator.next();
+
+                put(accessor.name);
+                put("=");
+                element(depth, accessor.get(container));
+            }
+        }
+
+        private void escape(final String string) {
+            try {
+                ESCAPE_JAVA.translate(string, this);
+            }
+            catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void putLimited(final String string) {
+            if (string.length() > _maxStringLength) {
+                put(string, 0, cutAt(string, 0, _maxStringLength));
+                put(ELLIPSIS);
+            }
+            else {
+                put(string);
+            }
+        }
+
+        void put(final CharSequence sequence) {
+            put(sequence, 0, sequence.length());
+        }
+
+        private void put(final CharSequence sequence, final int start, final int end) {
+            final int length = end - start;
+
+            try {
+                if (length <= _remaining) {
+                    _appendable.append(sequence, start, end);
+                    _remaining -= length;
+
+                    return;
+                }
+
+                _appendable.append(sequence, start, cutAt(sequence, start, start + (int) _remaining)).append(ELLIPSIS);
+                _remaining = 0;
+            }
+            catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+
+            throw new Exhausted(this);
+        }
+
+        @Override
+        public void write(final int character) {
+            if (_remaining < 1) {
+                put(ELLIPSIS);
+            }
+
+            try {
+                _appendable.append((char) character);
+                --_remaining;
+            }
+            catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            put(CharBuffer.wrap(buffer, offset, length));
+        }
+
+        @Override
+        public void write(final String string) {
+            put(string);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+/**
+ * A map from {@code int} keys to objects with no boxing and no per-entry
+ * objects, kept in a pair of parallel open addressing arrays at most half
+ * full. Like {@link IntSet}, the map only grows.
+ * <p>
+ * Example:
+ * <pre>
+ * final IntMap&lt;User&gt; users = ObjectUtils.&lt;User&gt;makeIntMap()
+ *     .put(1, joe)
+ *     .put(2, ann);
+ * </pre>
+ * @param <V>
+ *     the type of values
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class IntMap<V> {
+    private int[] _keys;
+    private Object[] _values;
+    private int _size;
+
+    // Zero marks an empty slot, so its entry is kept aside.
+    //
+    private boolean _hasZero;
+    private V _zeroValue;
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    public IntMap(final int expectedSize) {
+        final int capacity = PrimitiveTables.capacityFor(expectedSize);
+
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+    }
+
+    public IntMap<V> put(final int key, final V value) {
+        if (key == 0) {
+            if (_hasZero == false) {
+                _hasZero = true;
+                ++_size;
+            }
+
+            _zeroValue = value;
+            return this;
+        }
+
+        final int slot = probe(_keys, key);
+        _values[slot] = value;
+
+        if (_keys[slot] == 0) {
+            _keys[slot] = key;
+
+            if (++_size * 2 > _keys.length) {
+                grow();
+            }
+        }
+
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        if (key == 0) {
+            return _zeroValue;
+        }
+
+        return (V) _values[probe(_keys, key)];
+    }
+
+    public boolean containsKey(final int key) {
+        return key == 0 ? _hasZero : _keys[probe(_keys, key)] != 0;
+    }
+
+    public boolean containsAllKeys(final int... keys) {
+        for (final int key : keys) {
+            if (containsKey(key) == false) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(final EntryConsumer<? super V> consumer) {
+        if (_hasZero == true) {
+            consumer.accept(0, _zeroValue);
+        }
+
+        for (int slot = 0; slot < _keys.length; ++slot) {
+            if (_keys[slot] != 0) {
+                consumer.accept(_keys[slot], (V) _values[slot]);
+            }
+        }
+    }
+
+    private void grow() {
+        final int[] keys = new int[_keys.length * 2];
+        final Object[] values = new Object[keys.length];
+
+        for (int slot = 0; slot < _keys.length; ++slot) {
+            if (_keys[slot] != 0) {
+                final int newSlot = probe(keys, _keys[slot]);
+
+                keys[newSlot] = _keys[slot];
+                values[newSlot] = _values[slot];
+            }
+        }
+
+        _keys = keys;
+        _values = values;
+    }
+
+    private static int probe(final int[] keys, final int key) {
+        final int mask = keys.length - 1;
+
+        for (int slot = PrimitiveTables.hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == 0 || keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+}
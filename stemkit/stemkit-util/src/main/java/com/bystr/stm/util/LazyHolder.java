@@ -0,0 +1,176 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.ExceptionUtils.illegalStateException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A thread-safe memoizing counterpart of {@link Holder}, normally obtained
+ * from {@link Holder#holdLazily(ExceptionalSupplier)}. The supplier gets
+ * invoked on first access only, with either the value or the exception it
+ * produced kept for all subsequent accesses from any thread.
+ * <p>
+ * Once computed, an access costs a single volatile read (plus a clock read
+ * when a time to live is specified). The outcome may be discarded explicitly
+ * with {@link #invalidate()} or automatically when the time to live elapses,
+ * in which case the supplier is invoked again on next access.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class LazyHolder<T> {
+    private final ExceptionalSupplier<T> _supplier;
+    private final long _ttlNanos;
+
+    private volatile State<T> _state;
+
+    private final Object _publication = new Object();
+    private long _generation;
+
+    LazyHolder(final ExceptionalSupplier<T> supplier, final Duration ttl) {
+        _supplier = supplier;
+        _ttlNanos = ttl == null ? 0 : Math.max(1, ttl.toNanos());
+    }
+
+    public T get() {
+        final State<T> state = state();
+
+        if (state.exception == null) {
+            return state.object;
+        }
+
+        throw illegalStateException(
+            state.exception,
+            this.getClass().getName(), "Unexpected exception", state.exception.getClass().getName(), state.exception.getMessage()
+        );
+    }
+
+    public Optional<T> getOptional() {
+        return Optional.ofNullable(get());
+    }
+
+    public boolean hasValue() {
+        return state().object != null;
+    }
+
+    public boolean hasException() {
+        return state().exception != null;
+    }
+
+    /**
+     * Returns a plain {@link Holder} with the memoized value or exception,
+     * computing it first if needed. The returned holder is a new one on each
+     * call, so it may be freely used in {@code whenException()} chains.
+     * <p>
+     * @return [{@link Holder}{@code <T>}]
+     *     a new holder with the memoized outcome
+    */
+    public Holder<T> holder() {
+        final State<T> state = state();
+
+        if (state.exception != null) {
+            return new Holder<T>().setException(state.exception);
+        }
+
+        return new Holder<>(state.object);
+    }
+
+    /**
+     * Tells whether the outcome has been computed and is still valid, without
+     * triggering the computation.
+     * <p>
+     * @return [{@code boolean}]
+     *     {@code true} if the next access will not invoke the supplier
+    */
+    public boolean isComputed() {
+        return isValid(_state);
+    }
+
+    /**
+     * Discards the memoized outcome, causing the supplier to be invoked again
+     * on next access.
+     * <p>
+     * @return [{@link LazyHolder}{@code <T>}]
+     *     this holder
+    */
+    public LazyHolder<T> invalidate() {
+        synchronized (_publication) {
+            ++_generation;
+            _state = null;
+        }
+
+        return this;
+    }
+
+    // Works on a single snapshot of the state throughout, as invalidate() may
+    // reset it at any moment. A computation started before an invalidation
+    // serves its own caller, though does not get published, so that the
+    // invalidation is not lost.
+    //
+    private State<T> state() {
+        final State<T> state = _state;
+
+        if (isValid(state) == true) {
+            return state;
+        }
+
+        synchronized (this) {
+            final State<T> current = _state;
+
+            if (isValid(current) == true) {
+                return current;
+            }
+
+            final long generation;
+
+            synchronized (_publication) {
+                generation = _generation;
+            }
+
+            final State<T> computed = compute();
+
+            synchronized (_publication) {
+                if (generation == _generation) {
+                    _state = computed;
+                }
+            }
+
+            return computed;
+        }
+    }
+
+    private boolean isValid(final State<T> state) {
+        return state != null && (_ttlNanos == 0 || System.nanoTime() - state.expiresAt < 0);
+    }
+
+    private State<T> compute() {
+        final long expiresAt = _ttlNanos == 0 ? 0 : System.nanoTime() + _ttlNanos;
+
+        try {
+            return new State<>(_supplier.get(), null, expiresAt);
+        }
+        catch (final Exception exception) {
+            return new State<>(null, exception, expiresAt);
+        }
+    }
+
+    private static final class State<T> {
+        final T object;
+        final Exception exception;
+        final long expiresAt;
+
+        State(final T object, final Exception exception, final long expiresAt) {
+            this.object = object;
+            this.exception = exception;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
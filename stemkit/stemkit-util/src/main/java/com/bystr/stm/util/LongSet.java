@@ -0,0 +1,152 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of {@code long} values with no boxing and no per-item objects, the
+ * values kept in an open addressing table at most half full. The set only
+ * grows, which is what lookup sets of ids normally need.
+ * <p>
+ * Example:
+ * <pre>
+ * final LongSet ids = ObjectUtils.makeLongSet(1, 2, 3);
+ * ...
+ * if (ids.contains(id) == true) {
+ *     ...
+ * }
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class LongSet {
+    private long[] _table;
+    private int _size;
+
+    // Zero marks an empty slot, so it is kept aside as a flag.
+    //
+    private boolean _hasZero;
+
+    public LongSet(final int expectedSize) {
+        _table = new long[PrimitiveTables.capacityFor(expectedSize)];
+    }
+
+    public LongSet add(final long item) {
+        if (item == 0) {
+            if (_hasZero == false) {
+                _hasZero = true;
+                ++_size;
+            }
+
+            return this;
+        }
+
+        final int slot = probe(_table, item);
+
+        if (_table[slot] == 0) {
+            _table[slot] = item;
+
+            if (++_size * 2 > _table.length) {
+                grow();
+            }
+        }
+
+        return this;
+    }
+
+    public LongSet addAll(final long... items) {
+        for (final long item : items) {
+            add(item);
+        }
+
+        return this;
+    }
+
+    public boolean contains(final long item) {
+        return item == 0 ? _hasZero : _table[probe(_table, item)] != 0;
+    }
+
+    public boolean containsAll(final long... items) {
+        for (final long item : items) {
+            if (contains(item) == false) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public void forEach(final LongConsumer consumer) {
+        if (_hasZero == true) {
+            consumer.accept(0);
+        }
+
+        for (final long item : _table) {
+            if (item != 0) {
+                consumer.accept(item);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        final long[] items = new long[_size];
+        int index = 0;
+
+        if (_hasZero == true) {
+            items[index++] = 0;
+        }
+
+        for (final long item : _table) {
+            if (item != 0) {
+                items[index++] = item;
+            }
+        }
+
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        final long[] items = toArray();
+        Arrays.sort(items);
+
+        return Arrays.toString(items);
+    }
+
+    private void grow() {
+        final long[] table = new long[_table.length * 2];
+
+        for (final long item : _table) {
+            if (item != 0) {
+                table[probe(table, item)] = item;
+            }
+        }
+
+        _table = table;
+    }
+
+    private static int probe(final long[] table, final long item) {
+        final int mask = table.length - 1;
+
+        for (int slot = PrimitiveTables.hash(item) & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == 0 || table[slot] == item) {
+                return slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Lines of a UTF-8 text file mapped into memory. The file is mapped in
+// segments ending at line boundaries, as a single mapping cannot exceed 2G.
+// Within a segment, lines are split on '\n' bytes, which never occur inside
+// multibyte UTF-8 characters, and handed out as views of the mapped bytes.
+//
+final class MappedLines {
+    private MappedLines() {}
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MINIMAL_SPLIT_SIZE = 64 * 1024;
+    private static final int ASSUMED_LINE_LENGTH = 64;
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    static Spliterator<CharSequence> spliterator(final Path path) throws IOException {
+        final List<Spliterator<CharSequence>> segments = new ArrayList<>();
+
+        // The mappings stay valid after the channel is closed.
+        //
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            for (long start = 0; start < size; ) {
+                final long end = start + SEGMENT_SIZE < size ? lineEnd(channel, start + SEGMENT_SIZE, size) : size;
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+                segments.add(new Lines(buffer, 0, buffer.limit()));
+                start = end;
+            }
+        }
+
+        return new Segments(segments, 0, segments.size());
+    }
+
+    // Returns the position right after the first newline at or after the
+    // specified one.
+    //
+    private static long lineEnd(final FileChannel channel, final long from, final long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        for (long position = from; position < size; ) {
+            ((Buffer) buffer).clear();
+            final int count = channel.read(buffer, position);
+
+            // The file has shrunk since its size was taken, so the mapping
+            // would reach past its end.
+            //
+            if (count < 0) {
+                throw new EOFException("File shrank while being mapped: " + position + " < " + size);
+            }
+
+            for (int index = 0; index < count; ++index) {
+                if (buffer.get(index) == '\n') {
+                    return position + index + 1;
+                }
+            }
+
+            position += count;
+        }
+
+        return size;
+    }
+
+    private static final class Segments implements Spliterator<CharSequence> {
+        private final List<Spliterator<CharSequence>> _segments;
+        private int _index;
+        private final int _fence;
+
+        Segments(final List<Spliterator<CharSequence>> segments, final int index, final int fence) {
+            _segments = segments;
+            _index = index;
+            _fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super CharSequence> action) {
+            for (; _index < _fence; ++_index) {
+                if (_segments.get(_index).tryAdvance(action) == true) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (_fence - _index > 1) {
+                final int middle = (_index + _fence) >>> 1;
+                final Spliterator<CharSequence> prefix = new Segments(_segments, _index, middle);
+
+                _index = middle;
+                return prefix;
+            }
+
+            return _index < _fence ? _segments.get(_index).trySplit() : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            long estimate = 0;
+
+            for (int index = _index; index < _fence; ++index) {
+                estimate += _segments.get(index).estimateSize();
+            }
+
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    private static final class Lines implements Spliterator<CharSequence> {
+        private final ByteBuffer _buffer;
+        private int _index;
+        private final int _fence;
+
+        Lines(final ByteBuffer buffer, final int index, final int fence) {
+            _buffer = buffer;
+            _index = index;
+            _fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super CharSequence> action) {
+            if (_index >= _fence) {
+                return false;
+            }
+
+            final int newline = newline(_index);
+            int end = newline;
+
+            if (end > _index && _buffer.get(end - 1) == '\r') {
+                --end;
+            }
+
+            action.accept(new LineView(_buffer, _index, end));
+            _index = newline + 1;
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (_fence - _index < MINIMAL_SPLIT_SIZE) {
+                return null;
+            }
+
+            final int split = newline((_index + _fence) >>> 1) + 1;
+
+            if (split >= _fence) {
+                return null;
+            }
+
+            final Spliterator<CharSequence> prefix = new Lines(_buffer, _index, split);
+            _index = split;
+
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (_fence - _index + ASSUMED_LINE_LENGTH - 1) / ASSUMED_LINE_LENGTH;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+
+        // Returns the position of the next newline, or the fence.
+        //
+        private int newline(final int from) {
+            for (int index = from; index < _fence; ++index) {
+                if (_buffer.get(index) == '\n') {
+                    return index;
+                }
+            }
+
+            return _fence;
+        }
+    }
+
+    // A line as mapped bytes. ASCII lines are served from the bytes directly,
+    // others get decoded on first access, and so does toString().
+    //
+    static final class LineView implements CharSequence {
+        private final ByteBuffer _buffer;
+        private final int _start;
+        private final int _end;
+        private Boolean _ascii;
+        private String _decoded;
+
+        LineView(final ByteBuffer buffer, final int start, final int end) {
+            _buffer = buffer;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        public int length() {
+            return isAscii() == true ? _end - _start : toString().length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (isAscii() == false) {
+                return toString().charAt(index);
+            }
+
+            if (index < 0 || index >= _end - _start) {
+                throw new IndexOutOfBoundsException("Index out of range: " + index);
+            }
+
+            return (char) _buffer.get(_start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (isAscii() == false) {
+                return toString().subSequence(start, end);
+            }
+
+            if (start < 0 || end > _end - _start || start > end) {
+                throw new IndexOutOfBoundsException("Range out of bounds: " + start + ", " + end);
+            }
+
+            return new LineView(_buffer, _start + start, _start + end);
+        }
+
+        @Override
+        public String toString() {
+            if (_decoded == null) {
+                final byte[] bytes = new byte[_end - _start];
+                final ByteBuffer view = _buffer.duplicate();
+
+                ((Buffer) view).position(_start);
+                view.get(bytes);
+
+                _decoded = new String(bytes, UTF_8);
+            }
+
+            return _decoded;
+        }
+
+        private boolean isAscii() {
+            if (_ascii == null) {
+                boolean ascii = true;
+
+                for (int index = _start; index < _end && ascii == true; ++index) {
+                    ascii = _buffer.get(index) >= 0;
+                }
+
+                _ascii = ascii;
+            }
+
+            return _ascii;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.time.Duration;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Options for {@link FunctionalUtils#memoize(ExceptionalFunction, Memoization)}:
+ * the bound on the number or the total weight of cached results, the time
+ * to keep each result, and whether to cache exceptions. Options are
+ * immutable, so configured ones may be kept in constants and shared.
+ * <p>
+ * Example:
+ * <pre>
+ * private static final Memoization memoization = Memoization.bounded(10_000)
+ *     .withTtl(Duration.ofMinutes(5))
+ *     .withCachedExceptions(true);
+ * </pre>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class Memoization {
+    private static final ToLongBiFunction<Object, Object> UNIT_WEIGHER = (key, value) -> 1;
+
+    private final long _maxWeight;
+    private final ToLongBiFunction<Object, Object> _weigher;
+    private final Duration _ttl;
+    private final boolean _cachingExceptions;
+
+    private Memoization(final long maxWeight, final ToLongBiFunction<Object, Object> weigher, final Duration ttl, final boolean cachingExceptions) {
+        _maxWeight = maxWeight;
+        _weigher = weigher;
+        _ttl = ttl;
+        _cachingExceptions = cachingExceptions;
+    }
+
+    public static Memoization bounded(final long maxSize) {
+        return new Memoization(positive("maxSize", maxSize), UNIT_WEIGHER, null, false);
+    }
+
+    public static Memoization unbounded() {
+        return bounded(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns options bounding the total weight of cached results instead
+     * of their number.
+     * <p>
+     * @param maxWeight [{@code long}]
+     *     the maximum total weight
+     * @param weigher [{@link ToLongBiFunction}{@code <Object, Object>}]
+     *     the function to weigh a key and a value with, a value being
+     *     {@code null} for a cached exception
+     * <p>
+     * @return [{@link Memoization}]
+     *     new options with the bound set
+    */
+    public Memoization withMaxWeight(final long maxWeight, final ToLongBiFunction<Object, Object> weigher) {
+        return new Memoization(positive("maxWeight", maxWeight), weigher, _ttl, _cachingExceptions);
+    }
+
+    public Memoization withTtl(final Duration ttl) {
+        return new Memoization(_maxWeight, _weigher, ttl, _cachingExceptions);
+    }
+
+    public Memoization withCachedExceptions(final boolean cachingExceptions) {
+        return new Memoization(_maxWeight, _weigher, _ttl, cachingExceptions);
+    }
+
+    private static long positive(final String name, final long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+
+        return value;
+    }
+
+    long maxWeight() {
+        return _maxWeight;
+    }
+
+    ToLongBiFunction<Object, Object> weigher() {
+        return _weigher;
+    }
+
+    Duration ttl() {
+        return _ttl;
+    }
+
+    boolean isCachingExceptions() {
+        return _cachingExceptions;
+    }
+}
@@ -0,0 +1,419 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A thread safe function caching the results of another one, as made by
+ * {@link FunctionalUtils#memoize(ExceptionalFunction, Memoization)}.
+ * <p>
+ * Lookups go to a concurrent map and do not block. When the cache is
+ * bounded, it evicts according to a segmented LRU policy with frequency
+ * based admission: recently added results stay on probation until used
+ * again, and a new result only displaces an old one if its key has been
+ * asked for more often lately. This keeps a one-off scan over many keys
+ * from flushing the results that are actually reused. Key frequencies are
+ * estimated with a compact sketch that ages periodically.
+ * <p>
+ * The use of cached results is recorded on a best effort basis, skipped
+ * when other threads are busy updating the policy, so that hot lookups
+ * never wait for each other.
+ * <p>
+ * With a time to live, expired results get swept out on a miss at most
+ * once per that time, so that they do not pile up for keys never asked
+ * for again.
+ * <p>
+ * @param <K>
+ *     the type of keys
+ * @param <V>
+ *     the type of values
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public final class Memoized<K, V> implements Function<K, V> {
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private final ExceptionalFunction<? super K, ? extends V> _function;
+    private final Memoization _memoization;
+    private final long _ttlNanos;
+    private final long _protectedWeight;
+    private final boolean _bounded;
+    private final ConcurrentMap<K, Node<K, V>> _nodes = new ConcurrentHashMap<>();
+    private final AtomicLong _sweepDue;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Queue<K, V> _probation = new Queue<>();
+    private final Queue<K, V> _protected = new Queue<>();
+    private final FrequencySketch _sketch;
+    private long _weight;
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+
+    Memoized(final ExceptionalFunction<? super K, ? extends V> function, final Memoization memoization) {
+        _function = function;
+        _memoization = memoization;
+        _ttlNanos = memoization.ttl() == null ? 0 : memoization.ttl().toNanos();
+        _protectedWeight = memoization.maxWeight() - memoization.maxWeight() / 100 * (100 - PROTECTED_PERCENTAGE);
+        _bounded = memoization.maxWeight() != Long.MAX_VALUE;
+        _sketch = _bounded == true ? new FrequencySketch(memoization.maxWeight()) : null;
+        _sweepDue = new AtomicLong(System.nanoTime() + _ttlNanos);
+    }
+
+    /**
+     * Returns the cached result for a key, or computes and caches it. Checked
+     * exceptions of the function get rethrown wrapped in runtime ones, see
+     * {@link ExceptionUtils#runtimeExceptionUnlessAlready(Exception)}.
+     * <p>
+     * Concurrent misses for the same key may compute it more than once, with
+     * the first computed result kept.
+     * <p>
+     * @param key [{@code K}]
+     *     the key to get the result for, not {@code null}
+     * <p>
+     * @return [{@code V}]
+     *     the result of the function for the key
+    */
+    @Override
+    public V apply(final K key) {
+        final Node<K, V> node = _nodes.get(key);
+
+        if (node != null && node.isExpired() == false) {
+            _hits.increment();
+            recordUse(node);
+
+            return node.result();
+        }
+
+        _misses.increment();
+        sweepIfDue();
+
+        return compute(key, node).result();
+    }
+
+    public void invalidate(final K key) {
+        final Node<K, V> node = _nodes.remove(key);
+
+        if (node != null && _bounded == true) {
+            withLock(() -> discard(node));
+        }
+    }
+
+    public void invalidateAll() {
+        _nodes.keySet().forEach(this::invalidate);
+    }
+
+    public int size() {
+        return _nodes.size();
+    }
+
+    public long hits() {
+        return _hits.sum();
+    }
+
+    public long misses() {
+        return _misses.sum();
+    }
+
+    public long evictions() {
+        return _evictions.sum();
+    }
+
+    public double hitRate() {
+        final long hits = hits();
+        final long total = hits + misses();
+
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    private Node<K, V> compute(final K key, final Node<K, V> stale) {
+        final Holder<V> holder = new Holder<V>().acceptFrom(() -> _function.apply(key));
+
+        if (holder.hasException() == true && _memoization.isCachingExceptions() == false) {
+            return new Node<>(key, holder, 0, 0);
+        }
+
+        final Node<K, V> node = new Node<>(
+            key, holder,
+            _memoization.weigher().applyAsLong(key, holder.hasException() == true ? null : holder.get()),
+            _ttlNanos == 0 ? 0 : System.nanoTime() + _ttlNanos
+        );
+
+        // A stale node may have been swept or invalidated meanwhile, so
+        // failing to replace it falls back to adding.
+        //
+        if (stale == null || _nodes.replace(key, stale, node) == false) {
+            final Node<K, V> existing = _nodes.putIfAbsent(key, node);
+
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        if (_bounded == true) {
+            withLock(() -> {
+                if (stale != null) {
+                    discard(stale);
+                }
+
+                admit(node);
+            });
+        }
+
+        return node;
+    }
+
+    private void sweepIfDue() {
+        if (_ttlNanos == 0) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        final long sweepDue = _sweepDue.get();
+
+        if (now - sweepDue < 0 || _sweepDue.compareAndSet(sweepDue, now + _ttlNanos) == false) {
+            return;
+        }
+
+        _nodes.forEach((key, node) -> {
+            if (node.isExpired() == true && _nodes.remove(key, node) == true && _bounded == true) {
+                withLock(() -> discard(node));
+            }
+        });
+    }
+
+    private void recordUse(final Node<K, V> node) {
+        if (_bounded == false || _lock.tryLock() == false) {
+            return;
+        }
+
+        try {
+            if (node.queue == null) {
+                return;
+            }
+
+            _sketch.increment(node.key);
+
+            if (node.queue == _protected) {
+                _protected.moveToTail(node);
+                return;
+            }
+
+            _probation.remove(node);
+            _protected.add(node);
+
+            while (_protected.weight > _protectedWeight && _protected.head != null) {
+                final Node<K, V> demoted = _protected.head;
+
+                _protected.remove(demoted);
+                _probation.add(demoted);
+            }
+        }
+        finally {
+            _lock.unlock();
+        }
+    }
+
+    private void admit(final Node<K, V> candidate) {
+        // The node may have been invalidated before getting here, when it is
+        // not to be linked into the policy any more.
+        //
+        if (_nodes.get(candidate.key) != candidate) {
+            return;
+        }
+
+        _sketch.increment(candidate.key);
+        _probation.add(candidate);
+        _weight += candidate.weight;
+
+        while (_weight > _memoization.maxWeight()) {
+            Node<K, V> victim = _probation.head == candidate ? candidate.next : _probation.head;
+
+            if (victim == null) {
+                victim = _protected.head != null ? _protected.head : candidate;
+            }
+
+            if (victim != candidate && candidate.queue != null && _sketch.frequency(candidate.key) <= _sketch.frequency(victim.key)) {
+                victim = candidate;
+            }
+
+            _nodes.remove(victim.key, victim);
+            discard(victim);
+            _evictions.increment();
+        }
+    }
+
+    private void discard(final Node<K, V> node) {
+        if (node.queue != null) {
+            node.queue.remove(node);
+            _weight -= node.weight;
+        }
+    }
+
+    private void withLock(final Runnable action) {
+        _lock.lock();
+
+        try {
+            action.run();
+        }
+        finally {
+            _lock.unlock();
+        }
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final long weight;
+        private final Holder<V> _holder;
+        private final long _expiresAt;
+
+        Queue<K, V> queue;
+        Node<K, V> previous;
+        Node<K, V> next;
+
+        Node(final K key, final Holder<V> holder, final long weight, final long expiresAt) {
+            this.key = key;
+            this.weight = weight;
+            _holder = holder;
+            _expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return _expiresAt != 0 && System.nanoTime() - _expiresAt >= 0;
+        }
+
+        V result() {
+            if (_holder.hasException() == true) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(_holder.exception());
+            }
+
+            return _holder.get();
+        }
+    }
+
+    // An intrusive doubly linked list from the least to the most recently
+    // used node, guarded by the policy lock.
+    //
+    private static final class Queue<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void add(final Node<K, V> node) {
+            node.queue = this;
+            node.previous = tail;
+            node.next = null;
+
+            if (tail == null) {
+                head = node;
+            }
+            else {
+                tail.next = node;
+            }
+
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(final Node<K, V> node) {
+            if (node.previous == null) {
+                head = node.next;
+            }
+            else {
+                node.previous.next = node.next;
+            }
+
+            if (node.next == null) {
+                tail = node.previous;
+            }
+            else {
+                node.next.previous = node.previous;
+            }
+
+            node.queue = null;
+            node.previous = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToTail(final Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                add(node);
+            }
+        }
+    }
+
+    // A count-min sketch of 4-bit-like counters, capped at 15 and halved
+    // once the number of increments reaches ten times the capacity, so that
+    // the frequencies reflect recent history.
+    //
+    private static final class FrequencySketch {
+        private static final int MAXIMAL_COUNT = 15;
+        private static final int[] SEEDS = { 0x97CB3127, 0x0B4D5C29, 0x2D4D7A1D, 0x8A7E6B33 };
+
+        private final byte[] _counters;
+        private final int _mask;
+        private final long _sampleSize;
+        private long _additions;
+
+        FrequencySketch(final long capacity) {
+            final int size = (int) Math.min(1 << 22, Math.max(16, Long.highestOneBit(Math.max(1, capacity) - 1) << 1));
+
+            _counters = new byte[size];
+            _mask = size - 1;
+            _sampleSize = 10L * size;
+        }
+
+        void increment(final Object key) {
+            final int hash = key.hashCode();
+            boolean added = false;
+
+            for (final int seed : SEEDS) {
+                final int index = index(hash, seed);
+
+                if (_counters[index] < MAXIMAL_COUNT) {
+                    ++_counters[index];
+                    added = true;
+                }
+            }
+
+            if (added == true && ++_additions >= _sampleSize) {
+                for (int index = 0; index < _counters.length; ++index) {
+                    _counters[index] >>= 1;
+                }
+
+                _additions /= 2;
+            }
+        }
+
+        int frequency(final Object key) {
+            final int hash = key.hashCode();
+            int frequency = MAXIMAL_COUNT;
+
+            for (final int seed : SEEDS) {
+                frequency = Math.min(frequency, _counters[index(hash, seed)]);
+            }
+
+            return frequency;
+        }
+
+        private int index(final int hash, final int seed) {
+            final int mixed = (hash ^ seed) * 0x9E3779B9;
+            return (mixed ^ (mixed >>> 16)) & _mask;
+        }
+    }
+}
@@ -9,9 +9,7 @@
 package com.bystr.stm.util;
 
 import static com.bystr.stm.util.ExceptionUtils.forceRuntimeWhenException;
-import static java.lang.String.format;
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.joining;
 import static org.apache.commons.text.StringEscapeUtils.escapeJava;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -353,6 +351,65 @@ public class ObjectUtils {
         return new HashSet<>(asList(items));
     }
 
+    /**
+     * Starts building an immutable {@link CompactMap}, a memory efficient
+     * alternative to {@link #makeMap()} for lookup maps that do not change
+     * once built. Keys put more than once keep the last value.
+     * <p>
+     * Example:
+     * <pre>
+     * final Map&lt;String, Integer&gt; map = ObjectUtils.&lt;String, Integer&gt;makeCompactMap()
+     *     .put("a", 1)
+     *     .put("b", 2)
+     *     .build();
+     * </pre>
+     * @param <K>
+     *     the type of keys
+     * @param <V>
+     *     the type of values
+     * <p>
+     * @return [{@link CompactMap.Builder}{@code <K, V>}]
+     *     a builder to put entries to
+    */
+    public static <K, V> CompactMap.Builder<K, V> makeCompactMap() {
+        return makeCompactMap(CompactTable.LINEAR_SCAN_THRESHOLD);
+    }
+
+    public static <K, V> CompactMap.Builder<K, V> makeCompactMap(final int expectedSize) {
+        return new CompactMap.Builder<>(expectedSize);
+    }
+
+    @SafeVarargs
+    public static <T> Set<T> makeCompactSet(final T... items) {
+        return CompactSet.of(items);
+    }
+
+    /**
+     * Same as {@link #makeSet(Object...)} for {@code int} items, though
+     * makes an {@link IntSet} that keeps the items unboxed.
+     * <p>
+     * @param items [{@code int...}]
+     *     the items to put to the set
+     * <p>
+     * @return [{@link IntSet}]
+     *     a new set with the items
+    */
+    public static IntSet makeIntSet(final int... items) {
+        return new IntSet(items.length).addAll(items);
+    }
+
+    public static LongSet makeLongSet(final long... items) {
+        return new LongSet(items.length).addAll(items);
+    }
+
+    public static <V> IntMap<V> makeIntMap() {
+        return new IntMap<>(0);
+    }
+
+    public static <V> LongMap<V> makeLongMap() {
+        return new LongMap<>(0);
+    }
+
     public static String inspect(final Collection<?> collection) {
         return deepInspect(0, collection);
     }
@@ -362,11 +419,7 @@ public class ObjectUtils {
     }
 
     public static String deepInspect(final int depth, final Collection<?> items) {
-        return stringify(items, object ->
-            items.stream()
-                .map(figureInspector(depth))
-                .collect(joining(", ", prefix(items.size(), "["), "]"))
-        );
+        return deepInspectTo(new StringBuilder(), depth, items).toString();
     }
 
     public static String inspect(final Map<?, ?> map) {
@@ -378,69 +431,118 @@ public class ObjectUtils {
     }
 
     public static String deepInspect(final int depth, final Map<?, ?> items) {
-        return stringify(items, object ->
-            items.entrySet().stream()
-                .map(entry ->
-                    format("%s=>%s",
-                        figureInspector(0).apply(entry.getKey()),
-                        figureInspector(depth).apply(entry.getValue())
-                    )
-                )
-                .collect(joining(", ", prefix(items.size(), "{"), "}"))
-        );
-    }
-
-    private static String prefix(final int size, final String basePrefix) {
-        return size < 2 ? basePrefix : format("%s%d: ", basePrefix, size);
-    }
-
-    private static Function<Object, String> figureInspector(final int depth) {
-        return object -> {
-            if (object instanceof String) {
-                return inspect((String) object);
-            }
+        return deepInspectTo(new StringBuilder(), depth, items).toString();
+    }
 
-            if (depth != 0) {
-                final int lessDepth = depth > 0 ? depth - 1 : depth;
+    public static String inspect(final String string) {
+        return inspectTo(new StringBuilder(), string).toString();
+    }
 
-                if (object instanceof Collection<?>) {
-                    return deepInspect(lessDepth, (Collection<?>) object);
-                }
+    public static String inspectUnmarked(final String string) {
+        return stringify(string, object -> isBlank(string) ? "<blank>" : escapeJava(string));
+    }
 
-                if (object instanceof Map<?, ?>) {
-                    return deepInspect(lessDepth, (Map<?, ?>) object);
-                }
-            }
+    public static String inspect(final Object item) {
+        return inspectTo(new StringBuilder(), item).toString();
+    }
 
-            return inspect(object);
-        };
+    /**
+     * Same as {@link #inspect(Object)}, though the output is appended to the
+     * specified {@link Appendable} with no intermediate strings made. Use
+     * {@link Inspector} directly to limit the output.
+     * <p>
+     * @param <A>
+     *     the type of an appendable, normally inferred automatically
+     * <p>
+     * @param appendable [{@code A}]
+     *     an appendable to write to, like {@link StringBuilder}
+     * @param item [{@link Object}]
+     *     an object to inspect, or {@code null}
+     * <p>
+     * @return [{@code A}]
+     *     the appendable passed as a first parameter
+    */
+    public static <A extends Appendable> A inspectTo(final A appendable, final Object item) {
+        return Inspector.unlimited().inspectTo(appendable, item);
     }
 
-    public static String inspect(final String string) {
-        return stringify(string, object -> format("\"%s\"", escapeJava(string)));
+    public static <A extends Appendable> A inspectTo(final A appendable, final String string) {
+        return Inspector.unlimited().inspectTo(appendable, string);
     }
 
-    public static String inspectUnmarked(final String string) {
-        return stringify(string, object -> isBlank(string) ? "<blank>" : escapeJava(string));
+    public static <A extends Appendable> A inspectTo(final A appendable, final Collection<?> collection) {
+        return Inspector.unlimited().inspectTo(appendable, collection);
     }
 
-    private static final class Depot {
-        static final Class<?>[] literalClasses = {
-            Integer.class,
-            Number.class
-        };
+    public static <A extends Appendable> A inspectTo(final A appendable, final Map<?, ?> map) {
+        return Inspector.unlimited().inspectTo(appendable, map);
     }
 
-    public static String inspect(final Object item) {
-        return stringify(item, object -> {
-            for (final Class<?> aClass : Depot.literalClasses) {
-                if (aClass.isInstance(item) == true) {
-                    return item.toString();
-                }
-            }
+    public static <A extends Appendable> A deepInspectTo(final A appendable, final int depth, final Collection<?> items) {
+        return Inspector.unlimited().deepInspectTo(appendable, depth, items);
+    }
+
+    public static <A extends Appendable> A deepInspectTo(final A appendable, final int depth, final Map<?, ?> items) {
+        return Inspector.unlimited().deepInspectTo(appendable, depth, items);
+    }
+
+    /**
+     * Defers {@link #inspect(Object)} until the returned object gets converted
+     * to a string, which makes it a cheap argument for log messages that
+     * may never be formatted.
+     * <p>
+     * Example:
+     * <pre>
+     * logger.debug("Got: {}", lazyInspect(item));
+     * </pre>
+     * Nothing is cached, so each conversion reflects the object's state at
+     * the time.
+     * <p>
+     * @param item [{@link Object}]
+     *     an object to inspect, or {@code null}
+     * <p>
+     * @return [{@link Object}]
+     *     an object whose {@code toString()} performs the inspection
+    */
+    public static Object lazyInspect(final Object item) {
+        return deferred(builder -> inspectTo(builder, item));
+    }
+
+    public static Object lazyInspect(final String string) {
+        return deferred(builder -> inspectTo(builder, string));
+    }
 
-            return format("<%s:%s>", object.getClass().getSimpleName(), object);
-        });
+    public static Object lazyInspect(final Collection<?> collection) {
+        return deferred(builder -> inspectTo(builder, collection));
+    }
+
+    public static Object lazyInspect(final Map<?, ?> map) {
+        return deferred(builder -> inspectTo(builder, map));
+    }
+
+    public static Object lazyDeepInspect(final Collection<?> collection) {
+        return lazyDeepInspect(-1, collection);
+    }
+
+    public static Object lazyDeepInspect(final int depth, final Collection<?> items) {
+        return deferred(builder -> deepInspectTo(builder, depth, items));
+    }
+
+    public static Object lazyDeepInspect(final Map<?, ?> map) {
+        return lazyDeepInspect(-1, map);
+    }
+
+    public static Object lazyDeepInspect(final int depth, final Map<?, ?> items) {
+        return deferred(builder -> deepInspectTo(builder, depth, items));
+    }
+
+    private static Object deferred(final Consumer<StringBuilder> inspection) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return tap(new StringBuilder(), inspection).toString();
+            }
+        };
     }
 
     private static String stringify(final Object object, final Function<Object, String> converter) {
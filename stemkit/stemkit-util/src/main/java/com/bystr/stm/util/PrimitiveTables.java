@@ -0,0 +1,30 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+// Sizing and hashing shared by the open addressing primitive collections.
+//
+final class PrimitiveTables {
+    private PrimitiveTables() {}
+
+    private static final int MINIMAL_CAPACITY = 8;
+
+    static int capacityFor(final int expectedSize) {
+        return Integer.highestOneBit(Math.max(expectedSize * 2, MINIMAL_CAPACITY) - 1) << 1;
+    }
+
+    static int hash(final int key) {
+        final int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    static int hash(final long key) {
+        return hash((int) (key ^ (key >>> 32)));
+    }
+}
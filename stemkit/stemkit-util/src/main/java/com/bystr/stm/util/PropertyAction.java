@@ -8,35 +8,59 @@
 
 package com.bystr.stm.util;
 
-import static java.util.stream.Collectors.joining;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.regex.Pattern;
 
 // {@link PropertyActionTest}
+//
+// Resolutions are cached by the name passed to perform(). A cached one
+// stays valid while the system property it was resolved against keeps the
+// same value; the environment cannot change within the process. So in the
+// steady state perform() costs a map lookup plus a System.getProperty()
+// call, rather than splitting the name and querying both sources. Names are
+// expected to be constants in the code, so the cache is not bounded.
+//
 public class PropertyAction {
+    private static final Pattern SEPARATORS = Pattern.compile("[-:._]+");
+    private static final ConcurrentMap<String, Resolution> RESOLUTIONS = new ConcurrentHashMap<>();
+
     public static boolean perform(final String name, final Consumer<PropertyAction> consumer) {
-        PropertyAction selector = new PropertyAction(name.split("[-:._]+"));
+        PropertyAction selector = new PropertyAction(resolve(name));
         consumer.accept(selector);
 
         return selector.product();
     }
 
-    PropertyAction(final String[] strings) {
+    public static void invalidate(final String name) {
+        RESOLUTIONS.remove(name);
+    }
+
+    public static void invalidateAll() {
+        RESOLUTIONS.clear();
+    }
+
+    PropertyAction(final Resolution resolution) {
+        _resolution = resolution;
         _product = false;
+    }
 
-        if (retrieve("property", makePropertyName(strings), System::getProperty)) {
-            return;
-        }
+    private static Resolution resolve(final String name) {
+        final Resolution cached = RESOLUTIONS.get(name);
 
-        if (retrieve("environment", makeEnvironmentName(strings), System::getenv)) {
-            return;
+        if (cached != null && cached.isCurrent() == true) {
+            return cached;
         }
+
+        final Resolution resolution = new Resolution(SEPARATORS.split(name));
+        RESOLUTIONS.put(name, resolution);
+
+        return resolution;
     }
 
     public String name() {
-        return _name;
+        return _resolution.name;
     }
 
     public boolean product() {
@@ -47,67 +71,108 @@ public class PropertyAction {
         _product = product;
     }
 
-    private boolean retrieve(final String source, final String name, final Function<String, String> retriever) {
-        final String value = retriever.apply(name);
-
-        if (value == null) {
-            return false;
-        }
-
-        _source = source;
-        _value = value.trim().toLowerCase();
-        _name = name;
-
-        if (_value.isEmpty()) {
-            _value = null;
-        }
-
-        return true;
-    }
-
     public void whenTrue(final Runnable runnable) {
-        if (_value != null && _value.matches("^(true)|(yes)$")) {
+        if (_resolution.flag == Boolean.TRUE) {
             runnable.run();
         }
     }
 
     public void whenFalse(final Runnable runnable) {
-        if (_value == null || _value.matches("^(false)|(no)$")) {
+        if (_resolution.flag == Boolean.FALSE) {
             runnable.run();
         }
     }
 
     public void whenString(final Consumer<String> consumer) {
-        if (_value != null) {
-            consumer.accept(_value);
+        if (_resolution.value != null) {
+            consumer.accept(_resolution.value);
         }
     }
 
     public void whenNone(final Runnable runnable) {
-        if (_value == null) {
+        if (_resolution.value == null) {
             runnable.run();
         }
     }
 
     public String source() {
-        return _source;
+        return _resolution.source;
     }
 
     public String value() {
-        return _value;
+        return _resolution.value;
     }
 
-    private String makePropertyName(final String[] strings) {
-        return Stream.of(strings).map(String::toLowerCase).collect(joining("."));
+    Resolution resolution() {
+        return _resolution;
     }
 
-    private String makeEnvironmentName(final String[] strings) {
-        return Stream.of(strings).map(String::toUpperCase).collect(joining("_"));
-    }
+    // The outcome of looking a name up, first as a system property, then
+    // as an environment variable. The flag is TRUE for "true" and "yes",
+    // FALSE for "false", "no" and no value, and null otherwise.
+    //
+    static final class Resolution {
+        final String source;
+        final String name;
+        final String value;
+        final Boolean flag;
+
+        private final String _propertyName;
+        private final String _property;
+
+        Resolution(final String[] strings) {
+            _propertyName = makeName(strings, ".").toLowerCase();
+            _property = System.getProperty(_propertyName);
+
+            final String environmentName = makeName(strings, "_").toUpperCase();
+            final String environment = _property == null ? System.getenv(environmentName) : null;
+
+            if (_property != null) {
+                source = "property";
+                name = _propertyName;
+                value = normalize(_property);
+            }
+            else if (environment != null) {
+                source = "environment";
+                name = environmentName;
+                value = normalize(environment);
+            }
+            else {
+                source = null;
+                name = null;
+                value = null;
+            }
+
+            flag = parse(value);
+        }
+
+        boolean isCurrent() {
+            final String property = System.getProperty(_propertyName);
+            return property == _property || (property != null && property.equals(_property));
+        }
 
-    private String _source;
-    private String _value;
-    private String _name;
+        private static String makeName(final String[] strings, final String delimiter) {
+            return String.join(delimiter, strings);
+        }
+
+        private static String normalize(final String value) {
+            final String normalized = value.trim().toLowerCase();
+            return normalized.isEmpty() ? null : normalized;
+        }
+
+        private static Boolean parse(final String value) {
+            if (value == null || value.equals("false") || value.equals("no")) {
+                return Boolean.FALSE;
+            }
+
+            if (value.equals("true") || value.equals("yes")) {
+                return Boolean.TRUE;
+            }
+
+            return null;
+        }
+    }
 
+    private final Resolution _resolution;
     private boolean _product;
 }
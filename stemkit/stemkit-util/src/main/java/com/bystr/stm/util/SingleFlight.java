@@ -0,0 +1,96 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+// Runs at most one call per key at a time, as made by
+// FunctionalUtils.singleFlight(). Calls in flight are registered with
+// putIfAbsent(), so callers for different keys never contend beyond the
+// hash bins of the map. The caller registering a flight runs it, the ones
+// finding it registered wait for its outcome. A flight gets unregistered
+// before its waiters are released, so that calls made after its completion
+// start a new one.
+//
+final class SingleFlight<K, V> implements Function<K, V> {
+    private final ExceptionalFunction<? super K, ? extends V> _function;
+    private final ConcurrentMap<K, Flight<V>> _flights = new ConcurrentHashMap<>();
+
+    SingleFlight(final ExceptionalFunction<? super K, ? extends V> function) {
+        _function = function;
+    }
+
+    @Override
+    public V apply(final K key) {
+        final Flight<V> flight = new Flight<>();
+        final Flight<V> existing = _flights.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            return existing.await().result();
+        }
+
+        try {
+            flight.outcome.acceptFrom(() -> _function.apply(key));
+        }
+        catch (final Error error) {
+            flight.error = error;
+        }
+        finally {
+            _flights.remove(key, flight);
+            flight.completion.countDown();
+        }
+
+        return flight.result();
+    }
+
+    private static final class Flight<V> {
+        final Holder<V> outcome = new Holder<>();
+        final CountDownLatch completion = new CountDownLatch(1);
+
+        // Errors are not kept by holders, so they get recorded separately
+        // for the waiters to rethrow.
+        //
+        Error error;
+
+        Flight<V> await() {
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    completion.await();
+                    break;
+                }
+                catch (final InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted == true) {
+                Thread.currentThread().interrupt();
+            }
+
+            return this;
+        }
+
+        V result() {
+            if (error != null) {
+                throw error;
+            }
+
+            if (outcome.hasException() == true) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(outcome.exception());
+            }
+
+            return outcome.get();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.ExceptionUtils.makeMessage;
+
+/**
+ * Same as {@link StacklessRuntimeException} for the cases when an
+ * {@link IllegalStateException} is expected by the callers.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class StacklessIllegalStateException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final String _firstComponent;
+    private final String[] _remainingComponents;
+
+    private volatile String _message;
+
+    public StacklessIllegalStateException(final Throwable cause, final String firstComponent, final String... remainingComponents) {
+        super(cause);
+
+        _firstComponent = firstComponent;
+        _remainingComponents = remainingComponents;
+    }
+
+    @Override
+    public String getMessage() {
+        if (_message == null) {
+            _message = makeMessage(_firstComponent, _remainingComponents);
+        }
+
+        return _message;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        // IllegalStateException offers no constructor to disable the stack
+        // trace, hence skipping the stack walk here.
+        //
+        return this;
+    }
+}
@@ -0,0 +1,45 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.bystr.stm.util.ExceptionUtils.makeMessage;
+
+/**
+ * A runtime exception that does not capture a stack trace and composes its
+ * message from the components (see {@link ExceptionUtils#makeMessage(String, String...)})
+ * only when the message is actually requested. Intended for exceptions thrown
+ * and caught at high rates as a means of control flow, where the cost of the
+ * stack walk and the message formatting is never paid back.
+ * <p>
+ * @author Gennady Bystritsky (<a href="mailto:gennady@bystr.com">gennady@bystr.com</a>)
+*/
+public class StacklessRuntimeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String _firstComponent;
+    private final String[] _remainingComponents;
+
+    private volatile String _message;
+
+    public StacklessRuntimeException(final Throwable cause, final String firstComponent, final String... remainingComponents) {
+        super(null, cause, true, false);
+
+        _firstComponent = firstComponent;
+        _remainingComponents = remainingComponents;
+    }
+
+    @Override
+    public String getMessage() {
+        if (_message == null) {
+            _message = makeMessage(_firstComponent, _remainingComponents);
+        }
+
+        return _message;
+    }
+}
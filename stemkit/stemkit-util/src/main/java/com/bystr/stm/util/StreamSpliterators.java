@@ -0,0 +1,521 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+// Spliterators that split well for parallel streams over the sources that
+// the JDK splits poorly: iterators of an unknown or estimated size, and
+// random access lists not overriding spliterator().
+//
+final class StreamSpliterators {
+    private StreamSpliterators() {}
+
+    static final long UNKNOWN_SIZE = Long.MAX_VALUE;
+
+    private static final int MINIMAL_BATCH = 16;
+    private static final int MAXIMAL_BATCH = 1 << 25;
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final int MAXIMAL_PRESIZE = 1024;
+
+    // Hands out growing batches of an iterator, each one copied to an array
+    // that splits exactly. With a size estimate the batches start out at
+    // the size that gives each thread a few of them, otherwise they start
+    // small, so that even short streams of heavy items get spread.
+    //
+    static final class Batching<T> implements Spliterator<T> {
+        private final Iterator<? extends T> _iterator;
+        private final int _characteristics;
+        private final int _initialBatch;
+        private long _estimate;
+        private int _batch;
+
+        Batching(final Iterator<? extends T> iterator, final long estimate, final boolean exact) {
+            _iterator = iterator;
+            _characteristics = exact == true ? ORDERED | SIZED : ORDERED;
+            _estimate = estimate;
+            _initialBatch = estimate == UNKNOWN_SIZE ? MINIMAL_BATCH : (int) Math.min(MAXIMAL_BATCH, Math.max(MINIMAL_BATCH,
+                estimate / (BATCHES_PER_THREAD * (long) ForkJoinPool.getCommonPoolParallelism())
+            ));
+            _batch = _initialBatch;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (_iterator.hasNext() == false) {
+                return null;
+            }
+
+            final Object[] items = new Object[(int) Math.max(1, Math.min(_batch, _estimate))];
+            int count = 0;
+
+            while (count < items.length && _iterator.hasNext() == true) {
+                items[count++] = _iterator.next();
+            }
+
+            _batch = Math.min(MAXIMAL_BATCH, _batch + _initialBatch);
+
+            if (_estimate != UNKNOWN_SIZE) {
+                _estimate = Math.max(0, _estimate - count);
+            }
+
+            return Spliterators.spliterator(items, 0, count, ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (_iterator.hasNext() == false) {
+                return false;
+            }
+
+            action.accept(_iterator.next());
+
+            if (_estimate != UNKNOWN_SIZE && _estimate > 0) {
+                --_estimate;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            _iterator.forEachRemaining(action);
+            _estimate = 0;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return _characteristics;
+        }
+    }
+
+    // Splits a random access list by index, exactly in halves.
+    //
+    static final class RandomAccess<T> implements Spliterator<T> {
+        private final List<? extends T> _list;
+        private int _index;
+        private final int _fence;
+
+        RandomAccess(final List<? extends T> list, final int index, final int fence) {
+            _list = list;
+            _index = index;
+            _fence = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final int middle = (_index + _fence) >>> 1;
+
+            if (middle <= _index) {
+                return null;
+            }
+
+            final Spliterator<T> prefix = new RandomAccess<>(_list, _index, middle);
+            _index = middle;
+
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (_index >= _fence) {
+                return false;
+            }
+
+            action.accept(_list.get(_index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            while (_index < _fence) {
+                action.accept(_list.get(_index++));
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return _fence - _index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    // Groups items of a source spliterator into lists of up to a maximum
+    // size, optionally also closing a list once an item gets added after a
+    // maximum time since its first one. Splitting along with the source
+    // would cut a list short at nearly every split, so splits hand out runs
+    // of consecutive lists copied to an array instead, sized like the ones
+    // of Batching, and all the lists but the last one stay full.
+    //
+    static final class Batches<T> implements Spliterator<List<T>> {
+        private final Spliterator<T> _source;
+        private final int _maxSize;
+        private final long _maxNanos;
+        private int _initialRun;
+        private int _run;
+
+        Batches(final Spliterator<T> source, final int maxSize, final long maxNanos) {
+            _source = source;
+            _maxSize = maxSize;
+            _maxNanos = maxNanos;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super List<T>> action) {
+            final List<T> batch = new ArrayList<>((int) Math.min(_maxSize, Math.max(1, Math.min(_source.estimateSize(), MAXIMAL_PRESIZE))));
+
+            if (_source.tryAdvance(batch::add) == false) {
+                return false;
+            }
+
+            // The window opens with its first item, not when waiting for it.
+            //
+            final long start = _maxNanos == Long.MAX_VALUE ? 0 : System.nanoTime();
+
+            while (batch.size() < _maxSize && isOpen(start) == true && _source.tryAdvance(batch::add) == true) {
+                continue;
+            }
+
+            action.accept(batch);
+            return true;
+        }
+
+        @Override
+        public Spliterator<List<T>> trySplit() {
+            if (_initialRun == 0) {
+                final long estimate = estimateSize();
+
+                _initialRun = estimate == UNKNOWN_SIZE ? 1 : (int) Math.min(maximalRun(), Math.max(1,
+                    estimate / (BATCHES_PER_THREAD * (long) ForkJoinPool.getCommonPoolParallelism())
+                ));
+                _run = _initialRun;
+            }
+
+            final List<List<T>> lists = new ArrayList<>(_run);
+
+            while (lists.size() < _run && tryAdvance(lists::add) == true) {
+                continue;
+            }
+
+            if (lists.isEmpty() == true) {
+                return null;
+            }
+
+            _run = Math.min(maximalRun(), _run + _initialRun);
+            return lists.spliterator();
+        }
+
+        @Override
+        public long estimateSize() {
+            final long estimate = _source.estimateSize();
+            return estimate == Long.MAX_VALUE ? estimate : (estimate + _maxSize - 1) / _maxSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return (_source.characteristics() & ORDERED) | NONNULL;
+        }
+
+        private int maximalRun() {
+            return Math.max(1, MAXIMAL_BATCH / _maxSize);
+        }
+
+        private boolean isOpen(final long start) {
+            return _maxNanos == Long.MAX_VALUE || System.nanoTime() - start < _maxNanos;
+        }
+    }
+
+    // Slides a window of a fixed size over the items of a source spliterator
+    // by a step, keeping no more than a window's worth of items. Only full
+    // windows are produced. Sliding windows span the whole stream, so they
+    // do not split.
+    //
+    static final class Sliding<T> implements Spliterator<List<T>> {
+        private final Spliterator<T> _source;
+        private final int _size;
+        private final int _step;
+        private final ArrayDeque<T> _window;
+        private boolean _started;
+
+        Sliding(final Spliterator<T> source, final int size, final int step) {
+            _source = source;
+            _size = size;
+            _step = step;
+            _window = new ArrayDeque<>(size);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super List<T>> action) {
+            if (_started == true) {
+                for (int count = 0; count < _step; ++count) {
+                    if (_window.isEmpty() == true) {
+                        if (_source.tryAdvance(item -> {}) == false) {
+                            return false;
+                        }
+                    }
+                    else {
+                        _window.removeFirst();
+                    }
+                }
+            }
+
+            while (_window.size() < _size && _source.tryAdvance(_window::addLast) == true) {
+                continue;
+            }
+
+            if (_window.size() < _size) {
+                return false;
+            }
+
+            _started = true;
+            action.accept(new ArrayList<>(_window));
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<List<T>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    // Applies a function to the items of a source spliterator on an executor,
+    // keeping up to a maximum number of items in flight and handing out the
+    // results in the source order. The futures queued in order double as the
+    // reorder buffer, so it is bounded by the concurrency too.
+    //
+    static final class Concurrent<T, R> implements Spliterator<Holder<R>> {
+        private final Spliterator<T> _source;
+        private final int _maxConcurrency;
+        private final ExceptionalFunction<? super T, ? extends R> _function;
+        private final Executor _executor;
+        private final boolean _failFast;
+        private final ArrayDeque<FutureTask<Holder<R>>> _pending;
+        private volatile boolean _failed;
+
+        Concurrent(final Spliterator<T> source, final int maxConcurrency, final ExceptionalFunction<? super T, ? extends R> function, final Executor executor, final boolean failFast) {
+            _source = source;
+            _maxConcurrency = maxConcurrency;
+            _function = function;
+            _executor = executor;
+            _failFast = failFast;
+            _pending = new ArrayDeque<>(maxConcurrency);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Holder<R>> action) {
+            while (_pending.size() < _maxConcurrency && _failed == false && _source.tryAdvance(this::submit) == true) {
+                continue;
+            }
+
+            final FutureTask<Holder<R>> head = _pending.poll();
+
+            if (head == null) {
+                return false;
+            }
+
+            action.accept(await(head));
+            return true;
+        }
+
+        // Returns the value of a holder, or cancels the items in flight and
+        // throws its exception.
+        //
+        R valueOf(final Holder<R> holder) {
+            if (holder.hasException() == true) {
+                cancel();
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(holder.exception());
+            }
+
+            return holder.get();
+        }
+
+        void cancel() {
+            for (FutureTask<Holder<R>> task = _pending.poll(); task != null; task = _pending.poll()) {
+                task.cancel(true);
+            }
+        }
+
+        private void submit(final T item) {
+            final FutureTask<Holder<R>> task = new FutureTask<>(() -> {
+                final Holder<R> holder = Holder.holdFrom(() -> _function.apply(item));
+
+                if (_failFast == true && holder.hasException() == true) {
+                    _failed = true;
+                }
+
+                return holder;
+            });
+
+            _pending.add(task);
+            _executor.execute(task);
+        }
+
+        private Holder<R> await(final FutureTask<Holder<R>> task) {
+            try {
+                return task.get();
+            }
+            catch (final InterruptedException exception) {
+                task.cancel(true);
+                cancel();
+                Thread.currentThread().interrupt();
+
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(exception);
+            }
+            catch (final ExecutionException exception) {
+                cancel();
+
+                if (exception.getCause() instanceof Error) {
+                    throw (Error) exception.getCause();
+                }
+
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(exception);
+            }
+        }
+
+        @Override
+        public Spliterator<Holder<R>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    // Merges sorted iterators through a heap of their current heads, taking
+    // O(log k) per item and holding one item per iterator. Equal items come
+    // in the order of iterators, and optionally only the first of them.
+    //
+    static final class Merging<T> implements Spliterator<T> {
+        private final Comparator<? super T> _comparator;
+        private final PriorityQueue<Head<T>> _heads;
+        private final boolean _distinct;
+        private List<? extends Iterator<? extends T>> _iterators;
+        private boolean _started;
+        private T _last;
+
+        Merging(final Comparator<? super T> comparator, final List<? extends Iterator<? extends T>> iterators, final boolean distinct) {
+            _comparator = comparator;
+            _distinct = distinct;
+            _iterators = iterators;
+            _heads = new PriorityQueue<>(Math.max(1, iterators.size()), (first, second) -> {
+                final int result = comparator.compare(first.item, second.item);
+                return result != 0 ? result : Integer.compare(first.order, second.order);
+            });
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            // The heads get pulled on the first traversal rather than when the
+            // stream is made, so that nothing is read from the sources before
+            // a terminal operation, or when there is none.
+            //
+            if (_iterators != null) {
+                for (int order = 0; order < _iterators.size(); ++order) {
+                    final Iterator<? extends T> iterator = _iterators.get(order);
+
+                    if (iterator.hasNext() == true) {
+                        _heads.add(new Head<>(iterator, order));
+                    }
+                }
+
+                _iterators = null;
+            }
+
+            while (_heads.isEmpty() == false) {
+                final Head<T> head = _heads.poll();
+                final T item = head.item;
+
+                if (head.iterator.hasNext() == true) {
+                    head.item = head.iterator.next();
+                    _heads.add(head);
+                }
+
+                if (_distinct == true) {
+                    if (_started == true && _comparator.compare(_last, item) == 0) {
+                        continue;
+                    }
+
+                    _started = true;
+                    _last = item;
+                }
+
+                action.accept(item);
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED;
+        }
+
+        private static final class Head<T> {
+            final Iterator<? extends T> iterator;
+            final int order;
+            T item;
+
+            Head(final Iterator<? extends T> iterator, final int order) {
+                this.iterator = iterator;
+                this.order = order;
+                this.item = iterator.next();
+            }
+        }
+    }
+}
@@ -8,7 +8,20 @@
 
 package com.bystr.stm.util;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -35,4 +48,502 @@ public class StreamUtils {
     public static <T> Stream<T> streamFrom(final Iterable<T> iterable) {
         return StreamSupport.stream(iterable.spliterator(), false);
     }
+
+    public static <T> Stream<T> parallelStreamOf(final T[] values) {
+        return Arrays.stream(values).parallel();
+    }
+
+    /**
+     * Same as {@link #streamFrom(Iterable)}, though makes a parallel stream
+     * that splits well across threads. Random access lists get split by
+     * index exactly in halves, other collections of a known size and
+     * iterables of an unknown one get consumed in growing batches (see
+     * {@link #parallelStreamFrom(Iterator, long)}), unless their own
+     * spliterators already split by size.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param iterable [{@link Iterable}{@code <T>}]
+     *     the source of items
+     * <p>
+     * @return [{@link Stream}{@code <T>}]
+     *     a parallel stream of the items
+    */
+    public static <T> Stream<T> parallelStreamFrom(final Iterable<T> iterable) {
+        // Only the spliterator is ever taken, so that iterables which can be
+        // traversed just once are not asked for a second traversal.
+        //
+        final Spliterator<T> spliterator = iterable.spliterator();
+
+        if (spliterator.hasCharacteristics(Spliterator.SUBSIZED) == true) {
+            return StreamSupport.stream(spliterator, true);
+        }
+
+        if (iterable instanceof List<?> && iterable instanceof RandomAccess) {
+            final List<T> list = (List<T>) iterable;
+            return StreamSupport.stream(new StreamSpliterators.RandomAccess<>(list, 0, list.size()), true);
+        }
+
+        if (iterable instanceof Collection<?>) {
+            return StreamSupport.stream(new StreamSpliterators.Batching<>(Spliterators.iterator(spliterator), ((Collection<T>) iterable).size(), true), true);
+        }
+
+        return parallelStreamFrom(Spliterators.iterator(spliterator), spliterator.estimateSize());
+    }
+
+    /**
+     * Makes a parallel stream from an iterator, handing its items out to
+     * threads in batches. With an estimated number of items the batches are
+     * sized to give each thread a few of them, otherwise they start small and
+     * grow, so that even a short stream of expensive items is spread across
+     * threads.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param iterator [{@link Iterator}{@code <T>}]
+     *     the source of items
+     * @param estimatedSize [{@code long}]
+     *     the estimated number of items, {@link Long#MAX_VALUE} if unknown
+     * <p>
+     * @return [{@link Stream}{@code <T>}]
+     *     a parallel stream of the items
+    */
+    public static <T> Stream<T> parallelStreamFrom(final Iterator<T> iterator, final long estimatedSize) {
+        return StreamSupport.stream(new StreamSpliterators.Batching<>(iterator, estimatedSize, false), true);
+    }
+
+    /**
+     * Groups the items of a stream into consecutive lists of the specified
+     * size, the last one possibly shorter, as needed for bulk inserts or
+     * calls. The grouping is lazy, with only the current list kept in
+     * memory. A parallel stream stays parallel, with runs of consecutive
+     * lists handed out to its threads, so that only the last list may come
+     * out shorter there too.
+     * <p>
+     * Example:
+     * <pre>
+     * batches(users.stream(), 500).forEach(batch -&gt; db.insertAll(batch));
+     * </pre>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream to group
+     * @param size [{@code int}]
+     *     the maximum number of items in a list
+     * <p>
+     * @return [{@link Stream}{@code <}{@link List}{@code <T>>}]
+     *     a stream of the lists
+    */
+    public static <T> Stream<List<T>> batches(final Stream<T> stream, final int size) {
+        return regroup(stream, new StreamSpliterators.Batches<>(stream.spliterator(), positive("Size", size), Long.MAX_VALUE));
+    }
+
+    /**
+     * Same as {@link #batches(Stream, int)}, though a list also gets closed
+     * once an item is added to it after the specified time since its first
+     * item, so that items trickling in slowly are not held for too long.
+     * The time is only checked as items arrive.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream to group
+     * @param maxSize [{@code int}]
+     *     the maximum number of items in a list
+     * @param maxTime [{@link Duration}]
+     *     the maximum time to collect items for a list
+     * <p>
+     * @return [{@link Stream}{@code <}{@link List}{@code <T>>}]
+     *     a stream of the lists
+    */
+    public static <T> Stream<List<T>> windows(final Stream<T> stream, final int maxSize, final Duration maxTime) {
+        return regroup(stream, new StreamSpliterators.Batches<>(stream.spliterator(), positive("Size", maxSize), maxTime.toNanos()));
+    }
+
+    public static <T> Stream<List<T>> slidingWindows(final Stream<T> stream, final int size) {
+        return slidingWindows(stream, size, 1);
+    }
+
+    /**
+     * Makes a stream of lists of the specified size, each one starting the
+     * specified number of items after the previous one. Only full lists are
+     * produced, none at all if the stream is shorter than the size. No more
+     * than one list of items is kept in memory, and the resulting stream is
+     * sequential.
+     * <p>
+     * Example:
+     * <pre>
+     * slidingWindows(Stream.of(1, 2, 3, 4), 2, 1) // [1, 2], [2, 3], [3, 4]
+     * </pre>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream to slide over
+     * @param size [{@code int}]
+     *     the number of items in a list
+     * @param step [{@code int}]
+     *     the number of items between the starts of consecutive lists
+     * <p>
+     * @return [{@link Stream}{@code <}{@link List}{@code <T>>}]
+     *     a stream of the lists
+    */
+    public static <T> Stream<List<T>> slidingWindows(final Stream<T> stream, final int size, final int step) {
+        return StreamSupport.stream(new StreamSpliterators.Sliding<>(stream.spliterator(), positive("Size", size), positive("Step", step)), false)
+            .onClose(stream::close);
+    }
+
+    public static <T, R> Stream<R> mapConcurrent(final Stream<T> stream, final int maxConcurrency, final ExceptionalFunction<? super T, ? extends R> function) {
+        return mapConcurrent(stream, maxConcurrency, function, ConcurrencyUtils.defaultExecutor());
+    }
+
+    /**
+     * Maps the items of a stream with a blocking function, such as an HTTP
+     * or disk call, applied to no more than the specified number of items
+     * at a time on the executor. The results come out in the order of the
+     * items, with at most that number of them buffered. The resulting
+     * stream is sequential and lazy: items are only taken from the source
+     * stream as the results are consumed.
+     * <p>
+     * Once the function fails for an item, no more items are started, the
+     * results for the items before the failed one get produced as usual,
+     * and then the exception gets thrown (wrapped in a runtime one if
+     * checked), cancelling the items still in flight. Use
+     * {@link #mapConcurrentToHolders(Stream, int, ExceptionalFunction, Executor)}
+     * to get all the results, failed or not. Closing the resulting stream
+     * cancels the items in flight too.
+     * <p>
+     * Example:
+     * <pre>
+     * try (Stream&lt;Profile&gt; profiles = mapConcurrent(userIds.stream(), 16, client::fetchProfile)) {
+     *     profiles.forEach(...);
+     * }
+     * </pre>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * @param <R>
+     *     the type of results, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream of items
+     * @param maxConcurrency [{@code int}]
+     *     the maximum number of items to process at a time
+     * @param function [{@link ExceptionalFunction}{@code <? super T, ? extends R>}]
+     *     the function to apply to each item
+     * @param executor [{@link Executor}]
+     *     the executor to run the function on, see {@link ConcurrencyUtils#defaultExecutor()}
+     * <p>
+     * @return [{@link Stream}{@code <R>}]
+     *     a stream of the results
+    */
+    public static <T, R> Stream<R> mapConcurrent(final Stream<T> stream, final int maxConcurrency, final ExceptionalFunction<? super T, ? extends R> function, final Executor executor) {
+        final StreamSpliterators.Concurrent<T, R> spliterator = new StreamSpliterators.Concurrent<>(stream.spliterator(), positive("Concurrency limit", maxConcurrency), function, executor, true);
+        return concurrent(stream, spliterator).map(spliterator::valueOf);
+    }
+
+    public static <T, R> Stream<Holder<R>> mapConcurrentToHolders(final Stream<T> stream, final int maxConcurrency, final ExceptionalFunction<? super T, ? extends R> function) {
+        return mapConcurrentToHolders(stream, maxConcurrency, function, ConcurrencyUtils.defaultExecutor());
+    }
+
+    /**
+     * Same as {@link #mapConcurrent(Stream, int, ExceptionalFunction, Executor)},
+     * though all the items get processed regardless of failures, each result
+     * coming in a {@link Holder} with either a value or an exception.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * @param <R>
+     *     the type of results, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream of items
+     * @param maxConcurrency [{@code int}]
+     *     the maximum number of items to process at a time
+     * @param function [{@link ExceptionalFunction}{@code <? super T, ? extends R>}]
+     *     the function to apply to each item
+     * @param executor [{@link Executor}]
+     *     the executor to run the function on
+     * <p>
+     * @return [{@link Stream}{@code <}{@link Holder}{@code <R>>}]
+     *     a stream of the holders of results
+    */
+    public static <T, R> Stream<Holder<R>> mapConcurrentToHolders(final Stream<T> stream, final int maxConcurrency, final ExceptionalFunction<? super T, ? extends R> function, final Executor executor) {
+        return concurrent(stream, new StreamSpliterators.Concurrent<>(stream.spliterator(), positive("Concurrency limit", maxConcurrency), function, executor, false));
+    }
+
+    /**
+     * Merges iterators of items sorted according to the comparator into a
+     * single sorted stream, lazily, holding only the current item of each
+     * iterator. Each item costs {@code O(log k)} for {@code k} iterators.
+     * Equal items come in the order of the iterators they come from.
+     * <p>
+     * Example:
+     * <pre>
+     * mergeSorted(comparing(Event::getTime), first.iterator(), second.iterator())
+     *     .forEach(...);
+     * </pre>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param comparator [{@link Comparator}{@code <? super T>}]
+     *     the comparator the iterators are sorted by
+     * @param iterators [{@link Iterator}{@code <? extends T>...}]
+     *     the iterators to merge
+     * <p>
+     * @return [{@link Stream}{@code <T>}]
+     *     a sequential stream of all the items in order
+    */
+    @SafeVarargs
+    public static <T> Stream<T> mergeSorted(final Comparator<? super T> comparator, final Iterator<? extends T>... iterators) {
+        return merging(comparator, Arrays.asList(iterators), false);
+    }
+
+    /**
+     * Same as {@link #mergeSorted(Comparator, Iterator...)}, though only the
+     * first of the equal items (according to the comparator) makes it to
+     * the resulting stream.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * <p>
+     * @param comparator [{@link Comparator}{@code <? super T>}]
+     *     the comparator the iterators are sorted by
+     * @param iterators [{@link Iterator}{@code <? extends T>...}]
+     *     the iterators to merge
+     * <p>
+     * @return [{@link Stream}{@code <T>}]
+     *     a sequential stream of distinct items in order
+    */
+    @SafeVarargs
+    public static <T> Stream<T> mergeSortedDistinct(final Comparator<? super T> comparator, final Iterator<? extends T>... iterators) {
+        return merging(comparator, Arrays.asList(iterators), true);
+    }
+
+    @SafeVarargs
+    public static <T> Stream<T> mergeSorted(final Comparator<? super T> comparator, final Stream<? extends T>... streams) {
+        return merging(comparator, streams, false);
+    }
+
+    @SafeVarargs
+    public static <T> Stream<T> mergeSortedDistinct(final Comparator<? super T> comparator, final Stream<? extends T>... streams) {
+        return merging(comparator, streams, true);
+    }
+
+    private static <T> Stream<T> merging(final Comparator<? super T> comparator, final List<? extends Iterator<? extends T>> iterators, final boolean distinct) {
+        return StreamSupport.stream(new StreamSpliterators.Merging<>(comparator, iterators, distinct), false);
+    }
+
+    private static <T> Stream<T> merging(final Comparator<? super T> comparator, final Stream<? extends T>[] streams, final boolean distinct) {
+        final List<Iterator<? extends T>> iterators = new ArrayList<>(streams.length);
+
+        for (final Stream<? extends T> stream : streams) {
+            iterators.add(stream.iterator());
+        }
+
+        return merging(comparator, iterators, distinct).onClose(() -> {
+            for (final Stream<? extends T> stream : streams) {
+                stream.close();
+            }
+        });
+    }
+
+    /**
+     * Streams the lines of a UTF-8 text file mapped into memory, as
+     * lightweight views of the file bytes rather than strings. A line is
+     * decoded to a {@link String} only when converted with
+     * {@code toString()}, or accessed by characters if it is not pure ASCII.
+     * Lines end with {@code \n} or {@code \r\n}, not included.
+     * <p>
+     * Unlike {@link java.nio.file.Files#lines(Path)}, the stream splits well
+     * when made parallel, on line boundaries close to the middle of each
+     * part of the file, so that processing of large files scales across
+     * threads. A file larger than 2G is mapped in parts, so its lines must be
+     * shorter than that.
+     * <p>
+     * The views stay valid as long as referenced. Do not keep them once
+     * processed, use {@code toString()} for the lines to keep instead.
+     * <p>
+     * Example:
+     * <pre>
+     * final long errors = linesOf(path).parallel()
+     *     .filter(line -&gt; StringUtils.startsWith(line, "ERROR"))
+     *     .count();
+     * </pre>
+     * @param path [{@link Path}]
+     *     the file to read
+     * <p>
+     * @return [{@link Stream}{@code <}{@link CharSequence}{@code >}]
+     *     a sequential stream of the lines
+     * <p>
+     * @throws IOException
+     *     if the file cannot be opened or mapped
+    */
+    public static Stream<CharSequence> linesOf(final Path path) throws IOException {
+        return StreamSupport.stream(MappedLines.spliterator(path), false);
+    }
+
+    /**
+     * Maps the items of a stream with a function allowed to throw checked
+     * exceptions, rethrowing the first one as a runtime exception (see
+     * {@link ExceptionUtils#runtimeExceptionUnlessAlready(Exception)}). Unlike
+     * wrapping each call with {@link ExceptionUtils#forceRuntimeWhenException(ExceptionalSupplier)},
+     * nothing gets allocated per item.
+     * <p>
+     * Example:
+     * <pre>
+     * mapChecked(paths.stream(), Files::readAllBytes).forEach(...);
+     * </pre>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * @param <R>
+     *     the type of results, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream of items
+     * @param function [{@link ExceptionalFunction}{@code <? super T, ? extends R>}]
+     *     the function to apply to each item
+     * <p>
+     * @return [{@link Stream}{@code <R>}]
+     *     a stream of the results
+    */
+    public static <T, R> Stream<R> mapChecked(final Stream<T> stream, final ExceptionalFunction<? super T, ? extends R> function) {
+        return stream.map(item -> {
+            try {
+                return function.apply(item);
+            }
+            catch (final Exception exception) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(exception);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #mapChecked(Stream, ExceptionalFunction)}, though the
+     * items the function fails for are left out, their exceptions passed to
+     * the specified consumer instead. The consumer must be thread safe for a
+     * parallel stream.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * @param <R>
+     *     the type of results, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream of items
+     * @param function [{@link ExceptionalFunction}{@code <? super T, ? extends R>}]
+     *     the function to apply to each item
+     * @param failures [{@link Consumer}{@code <? super }{@link Exception}{@code >}]
+     *     the consumer of exceptions, like {@code failures::add}
+     * <p>
+     * @return [{@link Stream}{@code <R>}]
+     *     a stream of the results for the items the function succeeded for
+    */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Stream<R> mapChecked(final Stream<T> stream, final ExceptionalFunction<? super T, ? extends R> function, final Consumer<? super Exception> failures) {
+        return stream
+            .map(item -> {
+                try {
+                    return (Object) function.apply(item);
+                }
+                catch (final Exception exception) {
+                    failures.accept(exception);
+                    return FAILED;
+                }
+            })
+            .filter(result -> result != FAILED)
+            .map(result -> (R) result);
+    }
+
+    public static <T> Stream<T> filterChecked(final Stream<T> stream, final ExceptionalPredicate<? super T> predicate) {
+        return stream.filter(item -> {
+            try {
+                return predicate.test(item);
+            }
+            catch (final Exception exception) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(exception);
+            }
+        });
+    }
+
+    public static <T> Stream<T> filterChecked(final Stream<T> stream, final ExceptionalPredicate<? super T> predicate, final Consumer<? super Exception> failures) {
+        return stream.filter(item -> {
+            try {
+                return predicate.test(item);
+            }
+            catch (final Exception exception) {
+                failures.accept(exception);
+                return false;
+            }
+        });
+    }
+
+    public static <T> void forEachChecked(final Stream<T> stream, final ExceptionalConsumer<? super T> consumer) {
+        stream.forEach(item -> {
+            try {
+                consumer.accept(item);
+            }
+            catch (final Exception exception) {
+                throw ExceptionUtils.runtimeExceptionUnlessAlready(exception);
+            }
+        });
+    }
+
+    public static <T> void forEachChecked(final Stream<T> stream, final ExceptionalConsumer<? super T> consumer, final Consumer<? super Exception> failures) {
+        stream.forEach(item -> {
+            try {
+                consumer.accept(item);
+            }
+            catch (final Exception exception) {
+                failures.accept(exception);
+            }
+        });
+    }
+
+    /**
+     * Maps the items of a stream to holders of the function results, either
+     * values or exceptions, so that none of the failures get lost.
+     * <p>
+     * @param <T>
+     *     the type of items, normally inferred automatically
+     * @param <R>
+     *     the type of results, normally inferred automatically
+     * <p>
+     * @param stream [{@link Stream}{@code <T>}]
+     *     the stream of items
+     * @param function [{@link ExceptionalFunction}{@code <? super T, ? extends R>}]
+     *     the function to apply to each item
+     * <p>
+     * @return [{@link Stream}{@code <}{@link Holder}{@code <R>>}]
+     *     a stream of the holders of results
+    */
+    public static <T, R> Stream<Holder<R>> mapToHolder(final Stream<T> stream, final ExceptionalFunction<? super T, ? extends R> function) {
+        return stream.map(item -> new Holder<R>().acceptFrom(() -> function.apply(item)));
+    }
+
+    // Marks the items left out by mapChecked(), never seen by the callers.
+    //
+    private static final Object FAILED = new Object();
+
+    private static <T, R> Stream<Holder<R>> concurrent(final Stream<T> stream, final StreamSpliterators.Concurrent<T, R> spliterator) {
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            spliterator.cancel();
+            stream.close();
+        });
+    }
+
+    private static <T> Stream<List<T>> regroup(final Stream<T> stream, final Spliterator<List<T>> spliterator) {
+        return StreamSupport.stream(spliterator, stream.isParallel()).onClose(stream::close);
+    }
+
+    private static int positive(final String name, final int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+
+        return value;
+    }
 }
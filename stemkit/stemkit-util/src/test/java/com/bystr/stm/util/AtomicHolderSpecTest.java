@@ -0,0 +1,83 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+
+@RunWith(BDDSpecRunner.class)
+public class AtomicHolderSpecTest {
+    AtomicHolder<Integer> sampleHolder;
+
+    {
+        describe(AtomicHolder.class.getName(), () -> {
+            beforeEach(() -> {
+                sampleHolder = new AtomicHolder<>();
+            });
+
+            it("is empty when created", () -> {
+                expect(sampleHolder.isEmpty()).toBeTrue();
+                expect(sampleHolder.get()).toBeNull();
+            });
+
+            it("sets only when expected value matches", () -> {
+                expect(sampleHolder.compareAndSet(null, 5)).toBeTrue();
+                expect(sampleHolder.compareAndSet(null, 6)).toBeFalse();
+                expect(sampleHolder.get()).toEqual(5);
+            });
+
+            it("keeps exception thrown by replace()", () -> {
+                sampleHolder.set(5).replace(value -> {
+                    throw new IllegalArgumentException("replace");
+                });
+
+                expect(sampleHolder.hasValue()).toBeFalse();
+                expect(sampleHolder.exception().getMessage()).toEqual("replace");
+            });
+
+            it("provides snapshot with whenException() processing", () -> {
+                sampleHolder.acceptFrom(() -> {
+                    throw new IllegalStateException("snapshot");
+                });
+
+                expect(sampleHolder.snapshot().whenException(IllegalStateException.class).thenSet(17).get()).toEqual(17);
+                expect(sampleHolder.hasException()).toBeTrue();
+            });
+
+            it("accumulates concurrently without losing updates", () -> {
+                final List<Thread> threads = new ArrayList<>();
+
+                for (int index = 0; index < 8; ++index) {
+                    threads.add(new Thread(() -> {
+                        for (int count = 0; count < 1000; ++count) {
+                            sampleHolder.accumulate(1, Integer::sum);
+                        }
+                    }));
+                }
+
+                threads.forEach(Thread::start);
+
+                for (final Thread thread : threads) {
+                    thread.join();
+                }
+
+                expect(sampleHolder.get()).toEqual(8000);
+            });
+        });
+    }
+}
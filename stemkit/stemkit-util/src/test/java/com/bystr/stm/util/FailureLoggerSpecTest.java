@@ -0,0 +1,140 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util;
+
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+
+@RunWith(BDDSpecRunner.class)
+public class FailureLoggerSpecTest {
+    FailureLogger failureLogger;
+    List<String> lines;
+
+    {
+        describe(FailureLogger.class.getName(), () -> {
+            beforeEach(() -> {
+                failureLogger = new FailureLogger(LoggerFactory.getLogger(FailureLoggerSpecTest.class), 2, Duration.ofHours(1));
+            });
+
+            it("logs only first occurrences of same failure", () -> {
+                expect(failureLogger.info(new IllegalStateException("a"), "Failed: {}", "a")).toBeTrue();
+                expect(failureLogger.info(new IllegalStateException("b"), "Failed: {}", "b")).toBeTrue();
+                expect(failureLogger.info(new IllegalStateException("c"), "Failed: {}", "c")).toBeFalse();
+
+                expect(failureLogger.occurrences(IllegalStateException.class, "Failed: {}")).toEqual(3L);
+            });
+
+            it("tells failures apart by class and template", () -> {
+                failureLogger.info(new IllegalStateException(), "Failed: {}", "a");
+                failureLogger.info(new IllegalStateException(), "Failed: {}", "a");
+
+                expect(failureLogger.info(new IllegalArgumentException(), "Failed: {}", "a")).toBeTrue();
+                expect(failureLogger.info(new IllegalStateException(), "Broken: {}", "a")).toBeTrue();
+            });
+
+            it("tells failures apart by site", () -> {
+                failureLogger.infoAt("alpha", new IllegalStateException(), "Failed: {}", "a");
+                failureLogger.infoAt("alpha", new IllegalStateException(), "Failed: {}", "a");
+
+                expect(failureLogger.infoAt("alpha", new IllegalStateException(), "Failed: {}", "a")).toBeFalse();
+                expect(failureLogger.infoAt("beta", new IllegalStateException(), "Failed: {}", "a")).toBeTrue();
+                expect(failureLogger.occurrencesAt("alpha", IllegalStateException.class, "Failed: {}")).toEqual(3L);
+            });
+
+            it("counts failures at disabled level", () -> {
+                failureLogger = new FailureLogger(recordingLogger(new ArrayList<>(), false), 2, Duration.ofHours(1));
+
+                expect(failureLogger.info(new IllegalStateException(), "Failed")).toBeFalse();
+                expect(failureLogger.occurrences(IllegalStateException.class, "Failed")).toEqual(1L);
+            });
+
+            describe("summarizing", () -> {
+                beforeEach(() -> {
+                    lines = new ArrayList<>();
+                    failureLogger = new FailureLogger(recordingLogger(lines, true), 1, Duration.ofMillis(20));
+                });
+
+                it("logs summary at the level of the failures", () -> {
+                    failureLogger.warn(new IllegalStateException(), "Failed");
+                    failureLogger.warn(new IllegalStateException(), "Failed");
+                    failureLogger.warn(new IllegalStateException(), "Failed");
+
+                    Thread.sleep(40);
+                    failureLogger.warn(new IllegalStateException(), "Failed");
+
+                    expect(lines.toString()).toEqual(
+                        "[warn: Failed, warn: Repeated failure: {} more times in {}: {}: {}: 2, warn: Failed]"
+                    );
+                });
+
+                it("logs first occurrences again in next interval", () -> {
+                    expect(failureLogger.info(new IllegalStateException(), "Failed")).toBeTrue();
+                    expect(failureLogger.info(new IllegalStateException(), "Failed")).toBeFalse();
+
+                    Thread.sleep(40);
+
+                    expect(failureLogger.info(new IllegalStateException(), "Failed")).toBeTrue();
+                    expect(failureLogger.info(new IllegalStateException(), "Failed")).toBeFalse();
+                    expect(failureLogger.occurrences(IllegalStateException.class, "Failed")).toEqual(4L);
+                });
+
+                it("reports pending occurrences once they stop", () -> {
+                    failureLogger.info(new IllegalStateException(), "Failed");
+                    failureLogger.info(new IllegalStateException(), "Failed");
+
+                    Thread.sleep(40);
+                    failureLogger.info(new IllegalArgumentException(), "Other");
+
+                    expect(lines.toString()).toEqual(
+                        "[info: Failed, info: Other, info: Repeated failure: {} more times in {}: {}: {}: 1]"
+                    );
+                });
+
+                it("reports pending occurrences on flush", () -> {
+                    failureLogger.info(new IllegalStateException(), "Failed");
+                    failureLogger.info(new IllegalStateException(), "Failed");
+                    failureLogger.flush();
+                    failureLogger.flush();
+
+                    expect(lines.toString()).toEqual(
+                        "[info: Failed, info: Repeated failure: {} more times in {}: {}: {}: 1]"
+                    );
+                });
+            });
+        });
+    }
+
+    // Records the level, the template and the first argument of each line.
+    //
+    private static Logger recordingLogger(final List<String> lines, final boolean enabled) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class }, (proxy, method, arguments) -> {
+            if (method.getName().endsWith("Enabled") == true) {
+                return enabled;
+            }
+
+            final Object[] values = arguments.length > 1 ? (Object[]) arguments[1] : new Object[0];
+            lines.add(method.getName() + ": " + arguments[0] + (values.length > 0 && values[0] instanceof Long ? ": " + values[0] : ""));
+
+            return null;
+        });
+    }
+}
@@ -27,6 +27,7 @@ public class PropertyActionSpecTest {
     private boolean falseAction;
     private boolean noneAction;
     private String stringValue;
+    private PropertyAction.Resolution lastResolution;
 
     {
         describe("Property action", () -> {
@@ -75,6 +76,51 @@ public class PropertyActionSpecTest {
                 });
             });
 
+            describe("with cached resolutions", () -> {
+                it("should follow property changes", () -> {
+                    performWith("yes");
+                    System.setProperty("stm.perform.action", "no");
+
+                    PropertyAction.perform("stm-perform-action", selector -> {
+                        performed = true;
+                        expect(selector.value()).toEqual("no");
+                    });
+
+                    System.clearProperty("stm.perform.action");
+
+                    PropertyAction.perform("stm-perform-action", selector -> {
+                        expect(selector.source()).toBeNull();
+                        expect(selector.value()).toBeNull();
+                    });
+                });
+
+                it("should reuse resolution while property unchanged", () -> {
+                    performWith("yes");
+
+                    final PropertyAction.Resolution resolution = resolutionOf("stm-perform-action");
+
+                    expect(resolutionOf("stm-perform-action") == resolution).toBeTrue();
+                });
+
+                it("should resolve again when invalidated", () -> {
+                    performWith("yes");
+
+                    final PropertyAction.Resolution resolution = resolutionOf("stm-perform-action");
+                    PropertyAction.invalidate("stm-perform-action");
+
+                    final PropertyAction.Resolution invalidated = resolutionOf("stm-perform-action");
+                    PropertyAction.invalidateAll();
+
+                    expect(invalidated == resolution).toBeFalse();
+                    expect(resolutionOf("stm-perform-action") == invalidated).toBeFalse();
+
+                    PropertyAction.perform("stm-perform-action", selector -> {
+                        performed = true;
+                        expect(selector.value()).toEqual("yes");
+                    });
+                });
+            });
+
             describe("with action markers", () -> {
                 beforeEach(() -> {
                     trueAction = false;
@@ -190,6 +236,14 @@ public class PropertyActionSpecTest {
         });
     }
 
+    private PropertyAction.Resolution resolutionOf(final String name) {
+        PropertyAction.perform(name, selector -> {
+            this.lastResolution = selector.resolution();
+        });
+
+        return lastResolution;
+    }
+
     private void performWith(final String content) {
         if (content != null) {
             System.setProperty("stm.perform.action", content);
@@ -0,0 +1,110 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.exceptionUtils;
+
+import static com.bystr.stm.util.ExceptionUtils.ignoreWhenExceptionConcurrently;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.matcher.util.Expectations.fail;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.ExceptionUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class IgnoreConcurrentlySpecTest {
+    {
+        describe(ExceptionUtils.class.getName(), () -> {
+            describe("ignoring exceptions concurrently", () -> {
+                it("runs all actions ignoring any exception by default", () -> {
+                    final AtomicInteger count = new AtomicInteger();
+
+                    ignoreWhenExceptionConcurrently(2, Duration.ofSeconds(5),
+                        count::incrementAndGet,
+                        () -> {
+                            throw new IOException("io");
+                        },
+                        null,
+                        count::incrementAndGet
+                    );
+
+                    expect(count.get()).toEqual(2);
+                });
+
+                it("aggregates exceptions not ignored", () -> {
+                    try {
+                        ignoreWhenExceptionConcurrently(IOException.class, 4, Duration.ofSeconds(5),
+                            () -> {
+                                throw new IOException("ignored");
+                            },
+                            () -> {
+                                throw new IllegalStateException("first");
+                            },
+                            () -> {
+                                throw new IllegalArgumentException("second");
+                            }
+                        );
+
+                        fail("No expected exception");
+                    }
+                    catch (final RuntimeException exception) {
+                        expect(exception.getSuppressed().length).toEqual(2);
+                        expect(exception.getSuppressed()[0].getMessage()).toEqual("first");
+                        expect(exception.getSuppressed()[1].getMessage()).toEqual("second");
+                    }
+                });
+
+                it("reports timeout for actions past the deadline", () -> {
+                    try {
+                        ignoreWhenExceptionConcurrently(IOException.class, 2, Duration.ofMillis(50),
+                            () -> Thread.sleep(10000)
+                        );
+
+                        fail("No expected exception");
+                    }
+                    catch (final RuntimeException exception) {
+                        expect(exception.getSuppressed().length).toEqual(1);
+                        expect(exception.getSuppressed()[0] instanceof TimeoutException).toBeTrue();
+                    }
+                });
+
+                it("reports timeout even when ignoring any exception", () -> {
+                    try {
+                        ignoreWhenExceptionConcurrently(2, Duration.ofMillis(50),
+                            () -> Thread.sleep(10000),
+                            () -> {
+                                throw new IOException("io");
+                            }
+                        );
+
+                        fail("No expected exception");
+                    }
+                    catch (final RuntimeException exception) {
+                        expect(exception.getSuppressed().length).toEqual(1);
+                        expect(exception.getSuppressed()[0] instanceof TimeoutException).toBeTrue();
+                    }
+                });
+
+                it("ignores timeout thrown by an action when asked to", () ->
+                    ignoreWhenExceptionConcurrently(TimeoutException.class, 2, Duration.ofSeconds(10),
+                        () -> {
+                            throw new TimeoutException("remote");
+                        }
+                    ));
+            });
+        });
+    }
+}
@@ -0,0 +1,77 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.exceptionUtils;
+
+import static com.bystr.stm.util.ExceptionUtils.forceRuntimeWhenException;
+import static com.bystr.stm.util.ExceptionUtils.useStacklessExceptions;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.matcher.util.Expectations.fail;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.afterEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.io.IOException;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.ExceptionUtils;
+import com.bystr.stm.util.Holder;
+import com.bystr.stm.util.StacklessRuntimeException;
+
+@RunWith(BDDSpecRunner.class)
+public class StacklessSpecTest {
+    {
+        describe(ExceptionUtils.class.getName(), () -> {
+            afterEach(() -> useStacklessExceptions(false));
+
+            it("wraps into stackless exception when requested at call site", () -> {
+                try {
+                    forceRuntimeWhenException(true, () -> {
+                        throw new IOException("io");
+                    });
+
+                    fail("No expected exception");
+                }
+                catch (final StacklessRuntimeException exception) {
+                    expect(exception.getStackTrace().length).toEqual(0);
+                    expect(exception.getCause().getMessage()).toEqual("io");
+                    expect(exception.getMessage()).toEqual("java.io.IOException: io");
+                }
+            });
+
+            it("wraps into regular exception by default", () -> {
+                try {
+                    forceRuntimeWhenException(() -> {
+                        throw new IOException("io");
+                    });
+
+                    fail("No expected exception");
+                }
+                catch (final RuntimeException exception) {
+                    expect(exception instanceof StacklessRuntimeException).toBeFalse();
+                    expect(exception.getStackTrace().length > 0).toBeTrue();
+                }
+            });
+
+            it("makes holder exceptions stackless when enabled", () -> {
+                useStacklessExceptions(true);
+
+                try {
+                    new Holder<String>().exception();
+                    fail("No expected exception");
+                }
+                catch (final IllegalStateException exception) {
+                    expect(exception.getStackTrace().length).toEqual(0);
+                    expect(exception.getMessage()).toContain("No expected exception");
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,128 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.functionalUtils;
+
+import static com.bystr.stm.util.FunctionalUtils.batching;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.FunctionalUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class BatchingSpecTest {
+    private List<List<Integer>> calls;
+
+    {
+        describe(FunctionalUtils.class.getName(), () -> {
+            beforeEach(() -> {
+                calls = Collections.synchronizedList(new ArrayList<>());
+            });
+
+            describe("batching", () -> {
+                it("makes a bulk call for a single caller after the delay", () -> {
+                    final Function<Integer, String> function = batching(this::lookup, 10, Duration.ofMillis(1));
+
+                    expect(function.apply(7)).toEqual("#7");
+                    expect(calls.toString()).toEqual("[[7]]");
+                });
+
+                it("gathers concurrent calls", () -> {
+                    final Function<Integer, String> function = batching(this::lookup, 10, Duration.ofSeconds(10));
+                    final List<String> results = applyConcurrently(function, 20);
+
+                    expect(results.get(13)).toEqual("#13");
+                    expect(calls.size()).toEqual(2);
+                    expect(calls.get(0).size()).toEqual(10);
+                    expect(calls.get(1).size()).toEqual(10);
+                });
+
+                it("gets null for keys missing from the results", () -> {
+                    final Function<Integer, String> function = batching(keys -> Collections.emptyMap(), 10, Duration.ofMillis(1));
+                    expect(function.apply(1)).toBeNull();
+                });
+
+                it("propagates the bulk exception to every caller", () -> {
+                    final Function<Integer, String> function = batching(this::failing, 5, Duration.ofSeconds(10));
+                    final List<String> results = applyConcurrently(function, 5);
+
+                    expect(results.toString()).toEqual("[java.io.IOException: down, java.io.IOException: down, java.io.IOException: down, java.io.IOException: down, java.io.IOException: down]");
+                });
+
+                it("propagates the bulk error to every caller", () -> {
+                    final Function<Integer, String> function = batching(keys -> {
+                        throw new AssertionError("broken");
+                    }, 3, Duration.ofSeconds(10));
+
+                    final List<String> results = applyConcurrently(function, 3);
+                    expect(results.toString()).toEqual("[broken, broken, broken]");
+                });
+
+                it("rejects non-positive batch sizes", () -> {
+                    expect(() -> batching(this::lookup, 0, Duration.ZERO)).toThrow(IllegalArgumentException.class, "maxBatch must be positive: 0");
+                });
+            });
+        });
+    }
+
+    private Map<Integer, String> lookup(final List<Integer> keys) {
+        calls.add(keys);
+        return keys.stream().collect(toMap(key -> key, key -> "#" + key));
+    }
+
+    private Map<Integer, String> failing(final List<Integer> keys) throws IOException {
+        throw new IOException("down");
+    }
+
+    private static List<String> applyConcurrently(final Function<Integer, String> function, final int count) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(count);
+
+        try {
+            final List<Future<String>> futures = IntStream.range(0, count)
+                .mapToObj(key -> executor.submit(() -> {
+                    try {
+                        return function.apply(key);
+                    }
+                    catch (final RuntimeException | Error exception) {
+                        return exception.getMessage();
+                    }
+                }))
+                .collect(toList());
+
+            final List<String> results = new ArrayList<>();
+
+            for (final Future<String> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.functionalUtils;
+
+import static com.bystr.stm.util.FunctionalUtils.memoize;
+import static com.bystr.stm.util.FunctionalUtils.memoizeFunction;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.FunctionalUtils;
+import com.bystr.stm.util.Memoization;
+import com.bystr.stm.util.Memoized;
+
+@RunWith(BDDSpecRunner.class)
+public class MemoizeSpecTest {
+    private AtomicInteger calls;
+
+    {
+        describe(FunctionalUtils.class.getName(), () -> {
+            beforeEach(() -> {
+                calls = new AtomicInteger();
+            });
+
+            describe("memoize", () -> {
+                it("computes each result once", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.unbounded());
+
+                    expect(memoized.apply(3)).toEqual("9");
+                    expect(memoized.apply(3)).toEqual("9");
+                    expect(memoized.apply(4)).toEqual("16");
+
+                    expect(calls.get()).toEqual(2);
+                    expect(memoized.size()).toEqual(2);
+                    expect(memoized.hits()).toEqual(1L);
+                    expect(memoized.misses()).toEqual(2L);
+                });
+
+                it("accepts plain function", () -> {
+                    final Function<Integer, String> function = this::square;
+                    final Memoized<Integer, String> memoized = memoizeFunction(function.andThen(String::trim), Memoization.unbounded());
+
+                    expect(memoized.apply(3)).toEqual("9");
+                    expect(memoized.apply(3)).toEqual("9");
+                    expect(calls.get()).toEqual(1);
+                });
+
+                it("keeps no more results than the bound", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.bounded(10));
+
+                    for (int key = 0; key < 1000; ++key) {
+                        memoized.apply(key);
+                    }
+
+                    expect(memoized.size() <= 10).toBeTrue();
+                    expect(memoized.evictions()).toEqual(1000L - memoized.size());
+                });
+
+                it("keeps frequently used results over a scan", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.bounded(10));
+
+                    for (int round = 0; round < 5; ++round) {
+                        for (int key = 0; key < 5; ++key) {
+                            memoized.apply(key);
+                        }
+                    }
+
+                    for (int key = 100; key < 1000; ++key) {
+                        memoized.apply(key);
+                    }
+
+                    calls.set(0);
+
+                    for (int key = 0; key < 5; ++key) {
+                        memoized.apply(key);
+                    }
+
+                    expect(calls.get()).toEqual(0);
+                });
+
+                it("bounds total weight", () -> {
+                    final Memoized<Integer, String> memoized = memoize(
+                        this::square, Memoization.bounded(1).withMaxWeight(8, (key, value) -> ((String) value).length())
+                    );
+
+                    memoized.apply(100);
+                    memoized.apply(200);
+                    memoized.apply(300);
+
+                    expect(memoized.size()).toEqual(1);
+                });
+
+                it("recomputes expired results", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.unbounded().withTtl(Duration.ofMillis(20)));
+
+                    memoized.apply(2);
+                    Thread.sleep(50);
+                    memoized.apply(2);
+
+                    expect(calls.get()).toEqual(2);
+                    expect(memoized.size()).toEqual(1);
+                });
+
+                it("sweeps out expired results on misses", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.unbounded().withTtl(Duration.ofMillis(20)));
+
+                    for (int key = 0; key < 100; ++key) {
+                        memoized.apply(key);
+                    }
+
+                    Thread.sleep(50);
+                    memoized.apply(1000);
+
+                    expect(memoized.size()).toEqual(1);
+                });
+
+                it("recomputes invalidated results", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::square, Memoization.bounded(10));
+
+                    memoized.apply(2);
+                    memoized.invalidate(2);
+                    memoized.apply(2);
+                    memoized.invalidateAll();
+
+                    expect(calls.get()).toEqual(2);
+                    expect(memoized.size()).toEqual(0);
+                });
+
+                it("does not cache exceptions by default", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::failing, Memoization.unbounded());
+
+                    expect(() -> memoized.apply(1)).toThrow(RuntimeException.class, "java.io.IOException: 1");
+                    expect(() -> memoized.apply(1)).toThrow(RuntimeException.class);
+
+                    expect(calls.get()).toEqual(2);
+                    expect(memoized.size()).toEqual(0);
+                });
+
+                it("caches exceptions when asked", () -> {
+                    final Memoized<Integer, String> memoized = memoize(this::failing, Memoization.unbounded().withCachedExceptions(true));
+
+                    expect(() -> memoized.apply(1)).toThrow(RuntimeException.class);
+                    expect(() -> memoized.apply(1)).toThrow(RuntimeException.class);
+
+                    expect(calls.get()).toEqual(1);
+                    expect(memoized.hitRate()).toEqual(0.5);
+                });
+
+                it("rejects non-positive bounds", () -> {
+                    expect(() -> Memoization.bounded(0)).toThrow(IllegalArgumentException.class, "maxSize must be positive: 0");
+                });
+            });
+        });
+    }
+
+    private String square(final Integer key) {
+        calls.incrementAndGet();
+        return String.valueOf(key * key);
+    }
+
+    private String failing(final Integer key) throws IOException {
+        calls.incrementAndGet();
+        throw new IOException(String.valueOf(key));
+    }
+}
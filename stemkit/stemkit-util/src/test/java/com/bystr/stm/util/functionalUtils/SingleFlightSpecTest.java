@@ -0,0 +1,151 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.functionalUtils;
+
+import static com.bystr.stm.util.FunctionalUtils.singleFlight;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.FunctionalUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class SingleFlightSpecTest {
+    private static final int CALLERS = 16;
+
+    private AtomicInteger calls;
+    private CountDownLatch release;
+
+    {
+        describe(FunctionalUtils.class.getName(), () -> {
+            beforeEach(() -> {
+                calls = new AtomicInteger();
+                release = new CountDownLatch(1);
+            });
+
+            describe("singleFlight", () -> {
+                it("shares one call among concurrent callers", () -> {
+                    final Function<String, String> function = singleFlight(this::load);
+                    final List<String> results = applyConcurrently(function, "key");
+
+                    expect(calls.get()).toEqual(1);
+                    expect(results.stream().allMatch("key!"::equals)).toBeTrue();
+                });
+
+                it("shares the exception among concurrent callers", () -> {
+                    final Function<String, String> function = singleFlight(this::fail);
+                    final List<String> results = applyConcurrently(function, "key");
+
+                    expect(calls.get()).toEqual(1);
+                    expect(results.stream().allMatch("java.io.IOException: key"::equals)).toBeTrue();
+                });
+
+                it("shares the error among concurrent callers", () -> {
+                    final Function<String, String> function = singleFlight(this::crash);
+                    final List<String> results = applyConcurrently(function, "key");
+
+                    expect(calls.get()).toEqual(1);
+                    expect(results.stream().allMatch("key"::equals)).toBeTrue();
+                });
+
+                it("calls again once a call completes", () -> {
+                    final Function<String, String> function = singleFlight(key -> calls.incrementAndGet() + key);
+
+                    expect(function.apply("a")).toEqual("1a");
+                    expect(function.apply("a")).toEqual("2a");
+                    expect(function.apply("b")).toEqual("3b");
+                });
+            });
+        });
+    }
+
+    private String load(final String key) throws InterruptedException {
+        calls.incrementAndGet();
+        release.await();
+
+        return key + "!";
+    }
+
+    private String fail(final String key) throws Exception {
+        calls.incrementAndGet();
+        release.await();
+
+        throw new IOException(key);
+    }
+
+    private String crash(final String key) throws Exception {
+        calls.incrementAndGet();
+        release.await();
+
+        throw new AssertionError(key);
+    }
+
+    // Starts the callers and releases the call once all of them have arrived
+    // and parked, one in the call waiting for the release and the others
+    // waiting for the call, so that none of them can come late.
+    //
+    private List<String> applyConcurrently(final Function<String, String> function, final String key) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        final CountDownLatch arrived = new CountDownLatch(CALLERS);
+        final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+
+            for (int count = 0; count < CALLERS; ++count) {
+                futures.add(executor.submit(() -> {
+                    callers.add(Thread.currentThread());
+                    arrived.countDown();
+
+                    try {
+                        return function.apply(key);
+                    }
+                    catch (final RuntimeException | Error exception) {
+                        return exception.getMessage();
+                    }
+                }));
+            }
+
+            arrived.await();
+
+            while (callers.stream().allMatch(caller -> caller.getState() == Thread.State.WAITING) == false) {
+                Thread.yield();
+            }
+
+            release.countDown();
+
+            final List<String> results = new ArrayList<>();
+
+            for (final Future<String> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.holder;
+
+import static com.bystr.stm.util.Holder.holdAll;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.matcher.util.Expectations.fail;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.ExceptionalSupplier;
+import com.bystr.stm.util.Holder;
+import com.bystr.stm.util.HolderBatch;
+
+@RunWith(BDDSpecRunner.class)
+public class HoldAllSpecTest {
+    {
+        describe(Holder.class.getName(), () -> {
+            describe("holding in bulk", () -> {
+                it("keeps input order", () -> {
+                    final List<ExceptionalSupplier<Integer>> suppliers = new ArrayList<>();
+
+                    for (int index = 0; index < 100; ++index) {
+                        final int value = index;
+                        suppliers.add(() -> value);
+                    }
+
+                    final List<Integer> values = holdAll(suppliers).values();
+
+                    expect(values.size()).toEqual(100);
+                    expect(values.get(0)).toEqual(0);
+                    expect(values.get(99)).toEqual(99);
+                });
+
+                it("partitions values and exceptions", () -> {
+                    final HolderBatch<String> batch = holdAll(asList(
+                        () -> "a",
+                        () -> {
+                            throw new IllegalArgumentException("b");
+                        },
+                        () -> "c"
+                    ), 2);
+
+                    expect(batch.size()).toEqual(3);
+                    expect(batch.values()).toEqual(asList("a", "c"));
+                    expect(batch.exceptions().get(0).getMessage()).toEqual("b");
+                    expect(batch.holders().get(1).hasException()).toBeTrue();
+                });
+
+                it("rethrows errors once all suppliers are done", () -> {
+                    final AtomicInteger completed = new AtomicInteger();
+
+                    try {
+                        holdAll(asList(
+                            () -> {
+                                throw new AssertionError("broken");
+                            },
+                            () -> completed.incrementAndGet(),
+                            () -> completed.incrementAndGet()
+                        ), 2);
+
+                        fail("No expected error");
+                    }
+                    catch (final AssertionError error) {
+                        expect(error.getMessage()).toEqual("broken");
+                    }
+
+                    expect(completed.get()).toEqual(2);
+                });
+
+                it("processes exceptions in bulk", () -> {
+                    final HolderBatch<String> batch = Holder.<String>holdAll(asList(
+                        () -> {
+                            throw new IllegalArgumentException("a");
+                        },
+                        () -> "b"
+                    ))
+                        .then(holder -> holder.whenException(IllegalArgumentException.class).thenSet("fixed"));
+
+                    expect(batch.hasExceptions()).toBeFalse();
+                    expect(batch.values()).toEqual(asList("fixed", "b"));
+                });
+
+                it("respects concurrency limit", () -> {
+                    final AtomicInteger running = new AtomicInteger();
+                    final AtomicInteger maximum = new AtomicInteger();
+                    final List<ExceptionalSupplier<Integer>> suppliers = new ArrayList<>();
+
+                    for (int index = 0; index < 20; ++index) {
+                        suppliers.add(() -> {
+                            maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            Thread.sleep(5);
+                            return running.decrementAndGet();
+                        });
+                    }
+
+                    expect(holdAll(suppliers, 3).size()).toEqual(20);
+                    expect(maximum.get() <= 3).toBeTrue();
+                });
+            });
+        });
+    }
+}
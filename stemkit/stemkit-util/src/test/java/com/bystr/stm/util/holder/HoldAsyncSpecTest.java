@@ -0,0 +1,95 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.holder;
+
+import static com.bystr.stm.util.Holder.holdAsync;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.AsyncHolder;
+import com.bystr.stm.util.Holder;
+
+@RunWith(BDDSpecRunner.class)
+public class HoldAsyncSpecTest {
+    {
+        describe(Holder.class.getName(), () -> {
+            describe("holding asynchronously", () -> {
+                it("does not block the caller", () -> {
+                    final CountDownLatch latch = new CountDownLatch(1);
+                    final AsyncHolder<String> asyncHolder = holdAsync(() -> {
+                        latch.await();
+                        return "abc";
+                    });
+
+                    expect(asyncHolder.isDone()).toBeFalse();
+                    latch.countDown();
+
+                    expect(asyncHolder.join().get()).toEqual("abc");
+                });
+
+                it("maps and taps the value", () -> {
+                    final String[] tapped = {null};
+
+                    expect(
+                        holdAsync(() -> "abc")
+                            .tap(value -> tapped[0] = value)
+                            .map(String::length)
+                            .join().get()
+                    ).toEqual(3);
+
+                    expect(tapped[0]).toEqual("abc");
+                });
+
+                it("processes exceptions with whenException() chains", () ->
+                    expect(
+                        holdAsync(() -> {
+                            if (true) {
+                                throw new TimeoutException();
+                            }
+
+                            return "abc";
+                        })
+                            .then(holder -> holder.whenException(TimeoutException.class).thenSet("timeout"))
+                            .join().get()
+                    ).toEqual("timeout"));
+
+                it("keeps exception raised from a stage", () -> {
+                    final Holder<String> holder = holdAsync(() -> (String) null)
+                        .then(sameHolder -> sameHolder.whenEmpty().thenRaise(() -> new IllegalStateException("empty")))
+                        .join();
+
+                    expect(holder.hasException(IllegalStateException.class)).toBeTrue();
+                });
+
+                it("leaves the source holder intact for other stages", () -> {
+                    final AsyncHolder<String> source = holdAsync(() -> "abc");
+                    final AsyncHolder<String> replaced = source.replace(value -> value + "def");
+
+                    expect(replaced.join().get()).toEqual("abcdef");
+                    expect(source.join().get()).toEqual("abc");
+                    expect(source.map(String::length).join().get()).toEqual(3);
+                });
+
+                it("keeps exception from mapping", () ->
+                    expect(
+                        holdAsync(() -> "abc")
+                            .map(value -> Integer.parseInt(value))
+                            .join().hasException(NumberFormatException.class)
+                    ).toBeTrue());
+            });
+        });
+    }
+}
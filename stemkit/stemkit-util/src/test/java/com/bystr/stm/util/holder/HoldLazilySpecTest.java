@@ -0,0 +1,115 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.holder;
+
+import static com.bystr.stm.util.Holder.holdLazily;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.beforeEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.Holder;
+import com.bystr.stm.util.LazyHolder;
+
+@RunWith(BDDSpecRunner.class)
+public class HoldLazilySpecTest {
+    final AtomicInteger invocations = new AtomicInteger();
+
+    {
+        describe(Holder.class.getName(), () -> {
+            describe("holding lazily", () -> {
+                beforeEach(() -> invocations.set(0));
+
+                it("does not compute until accessed", () -> {
+                    final LazyHolder<Integer> lazyHolder = holdLazily(invocations::incrementAndGet);
+
+                    expect(lazyHolder.isComputed()).toBeFalse();
+                    expect(invocations.get()).toEqual(0);
+                });
+
+                it("computes once across threads", () -> {
+                    final LazyHolder<Integer> lazyHolder = holdLazily(invocations::incrementAndGet);
+                    final List<Thread> threads = new ArrayList<>();
+
+                    for (int index = 0; index < 8; ++index) {
+                        threads.add(new Thread(lazyHolder::get));
+                    }
+
+                    threads.forEach(Thread::start);
+
+                    for (final Thread thread : threads) {
+                        thread.join();
+                    }
+
+                    expect(lazyHolder.get()).toEqual(1);
+                    expect(invocations.get()).toEqual(1);
+                });
+
+                it("caches exception", () -> {
+                    final LazyHolder<Integer> lazyHolder = holdLazily(() -> {
+                        invocations.incrementAndGet();
+                        throw new IllegalArgumentException("lazy");
+                    });
+
+                    expect(lazyHolder.hasException()).toBeTrue();
+                    expect(lazyHolder.holder().whenException(IllegalArgumentException.class).thenSet(5).get()).toEqual(5);
+                    expect(invocations.get()).toEqual(1);
+                });
+
+                it("recomputes when invalidated", () -> {
+                    final LazyHolder<Integer> lazyHolder = holdLazily(invocations::incrementAndGet);
+
+                    expect(lazyHolder.get()).toEqual(1);
+                    expect(lazyHolder.invalidate().get()).toEqual(2);
+                });
+
+                it("keeps invalidation made while computing", () -> {
+                    final CountDownLatch started = new CountDownLatch(1);
+                    final CountDownLatch release = new CountDownLatch(1);
+                    final LazyHolder<Integer> lazyHolder = holdLazily(() -> {
+                        started.countDown();
+                        release.await();
+
+                        return invocations.incrementAndGet();
+                    });
+
+                    final Thread thread = new Thread(lazyHolder::get);
+                    thread.start();
+
+                    started.await();
+                    lazyHolder.invalidate();
+                    release.countDown();
+                    thread.join();
+
+                    expect(lazyHolder.isComputed()).toBeFalse();
+                    expect(lazyHolder.get()).toEqual(2);
+                });
+
+                it("recomputes when expired", () -> {
+                    final LazyHolder<Integer> lazyHolder = holdLazily(invocations::incrementAndGet, Duration.ofMillis(20));
+
+                    expect(lazyHolder.get()).toEqual(1);
+                    Thread.sleep(40);
+
+                    expect(lazyHolder.isComputed()).toBeFalse();
+                    expect(lazyHolder.get()).toEqual(2);
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,63 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.holder;
+
+import static com.bystr.stm.util.Holder.holdFrom;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.DeadlineStatistics;
+import com.bystr.stm.util.Holder;
+
+@RunWith(BDDSpecRunner.class)
+public class HoldWithDeadlineSpecTest {
+    {
+        describe(Holder.class.getName(), () -> {
+            describe("holding with a deadline", () -> {
+                it("keeps value produced in time", () ->
+                    expect(holdFrom(() -> "abc", Duration.ofSeconds(5)).get()).toEqual("abc"));
+
+                it("keeps exception thrown in time", () ->
+                    expect(
+                        holdFrom(() -> Integer.valueOf("abc"), Duration.ofSeconds(5))
+                            .hasException(NumberFormatException.class)
+                    ).toBeTrue());
+
+                it("keeps timeout exception and interrupts the supplier", () -> {
+                    final CountDownLatch interrupted = new CountDownLatch(1);
+                    final long expirations = DeadlineStatistics.expirations();
+
+                    final Holder<String> holder = holdFrom(() -> {
+                        try {
+                            Thread.sleep(10000);
+                        }
+                        catch (final InterruptedException exception) {
+                            interrupted.countDown();
+                        }
+
+                        return "late";
+                    }, Duration.ofMillis(20));
+
+                    expect(holder.whenException(TimeoutException.class).thenSet("timeout").get()).toEqual("timeout");
+                    expect(interrupted.await(5, TimeUnit.SECONDS)).toBeTrue();
+                    expect(DeadlineStatistics.expirations() > expirations).toBeTrue();
+                });
+            });
+        });
+    }
+}
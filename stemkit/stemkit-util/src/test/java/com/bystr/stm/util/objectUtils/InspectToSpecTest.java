@@ -0,0 +1,248 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.objectUtils;
+
+import static com.bystr.stm.util.ObjectUtils.deepInspect;
+import static com.bystr.stm.util.ObjectUtils.deepInspectTo;
+import static com.bystr.stm.util.ObjectUtils.inspect;
+import static com.bystr.stm.util.ObjectUtils.inspectTo;
+import static com.bystr.stm.util.ObjectUtils.lazyDeepInspect;
+import static com.bystr.stm.util.ObjectUtils.lazyInspect;
+import static com.bystr.stm.util.ObjectUtils.makeMap;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.afterEach;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.Arrays.asList;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.Inspector;
+import com.bystr.stm.util.ObjectUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class InspectToSpecTest {
+    private final List<Object> nested = asList("a", asList(1, asList("b")), makeMap().put("k", asList(2)).map);
+
+    {
+        describe(ObjectUtils.class.getName(), () -> {
+            describe("inspects nested structures", () -> {
+                it("at depth 0", () ->
+                    expect(inspect(nested))
+                        .toEqual("[3: \"a\", <ArrayList:size=2>, <HashMap:size=1>]"));
+
+                it("at depth 1", () ->
+                    expect(deepInspect(1, nested))
+                        .toEqual("[3: \"a\", [2: 1, <ArrayList:size=1>], {\"k\"=><ArrayList:size=1>}]"));
+
+                it("at any depth", () ->
+                    expect(deepInspect(nested))
+                        .toEqual("[3: \"a\", [2: 1, [\"b\"]], {\"k\"=>[2]}]"));
+            });
+
+            describe("inspects into appendable", () -> {
+                it("appending to existing content", () ->
+                    expect(deepInspectTo(new StringBuilder("got: "), -1, nested).toString())
+                        .toEqual("got: " + deepInspect(nested)));
+
+                it("writing to a writer", () ->
+                    expect(deepInspectTo(new StringWriter(), -1, nested).toString())
+                        .toEqual(deepInspect(nested)));
+            });
+
+            describe("inspects safely", () -> {
+                it("marking cycles", () -> {
+                    final Map<String, Object> map = new HashMap<>();
+                    map.put("self", map);
+
+                    expect(deepInspect(asList(map, map)))
+                        .toEqual("[2: {\"self\"=><cycle:HashMap>}, {\"self\"=><cycle:HashMap>}]");
+                });
+
+                it("marking mutual cycles at any depth", () -> {
+                    final List<Object> first = new ArrayList<>();
+                    final List<Object> second = new ArrayList<>(asList(first));
+                    first.add(second);
+
+                    expect(inspect(first)).toEqual("[<ArrayList:size=1>]");
+                    expect(deepInspect(1, first)).toEqual("[[<cycle:ArrayList>]]");
+                    expect(deepInspect(first)).toEqual("[[<cycle:ArrayList>]]");
+                    expect(Inspector.bounded().inspectTo(new StringBuilder(), first).toString()).toEqual("[<ArrayList:size=1>]");
+                });
+
+                it("summarizing containers past the depth", () -> {
+                    List<Object> list = new ArrayList<>(asList(1, 2));
+
+                    for (int level = 0; level < 10; ++level) {
+                        list = new ArrayList<>(asList(list));
+                    }
+
+                    expect(deepInspect(2, list)).toEqual("[[[<ArrayList:size=1>]]]");
+                });
+
+                it("very deep structures", () -> {
+                    List<Object> list = new ArrayList<>();
+
+                    for (int level = 0; level < 100000; ++level) {
+                        list = new ArrayList<>(asList(list));
+                    }
+
+                    expect(deepInspect(list).length()).toEqual(200002);
+                });
+
+                it("limiting depth", () ->
+                    expect(Inspector.unlimited().withMaxDepth(1).deepInspectTo(new StringBuilder(), -1, asList(asList(asList(1, 2)))).toString())
+                        .toEqual("[[[2: ...]]]"));
+
+                it("within bounds", () -> {
+                    final List<Integer> list = new ArrayList<>(Collections.nCopies(1000000, 7));
+
+                    expect(Inspector.bounded().inspectTo(new StringBuilder(), list).toString())
+                        .toEqual("[1000000: " + String.join(", ", Collections.nCopies(100, "7")) + ", ...]");
+                });
+            });
+
+            describe("inspects lazily", () -> {
+                it("only when converted to string", () -> {
+                    final AtomicInteger conversions = new AtomicInteger();
+                    final Object item = new Object() {
+                        @Override
+                        public String toString() {
+                            return String.valueOf(conversions.incrementAndGet());
+                        }
+                    };
+
+                    final Object inspection = lazyInspect(asList(item));
+                    expect(conversions.get()).toEqual(0);
+
+                    expect(inspection.toString()).toEqual("[<:1>]");
+                    expect(inspection.toString()).toEqual("[<:2>]");
+                });
+
+                it("same as eagerly", () -> {
+                    expect(lazyInspect("a\tb").toString()).toEqual(inspect("a\tb"));
+                    expect(lazyDeepInspect(nested).toString()).toEqual(deepInspect(nested));
+                    expect(lazyDeepInspect(1, nested).toString()).toEqual(deepInspect(1, nested));
+                });
+            });
+
+            describe("inspects with type inspectors", () -> {
+                afterEach(() -> {
+                    Inspector.register(Optional.class, null);
+                    Inspector.register(Number.class, null);
+                    Inspector.register(Long.class, null);
+                });
+
+                it("on their own and in containers", () -> {
+                    Inspector.register(Optional.class, (appendable, optional) ->
+                        inspectTo(appendable.append("?"), optional.orElse(null))
+                    );
+
+                    expect(inspect(Optional.of(1))).toEqual("?1");
+                    expect(inspect(asList(Optional.empty(), Optional.of("a")))).toEqual("[2: ?<null>, ?<String:a>]");
+                });
+
+                it("cut once at the total length when nested", () -> {
+                    Inspector.register(Optional.class, (appendable, optional) ->
+                        inspectTo(appendable.append("?"), optional.orElse(null))
+                    );
+
+                    expect(Inspector.unlimited().withMaxLength(8).inspectTo(new StringBuilder(), asList(Optional.of("abcdefgh"), Optional.of(1))).toString())
+                        .toEqual("[2: ?<St...");
+                });
+
+                it("preferring most specific", () -> {
+                    Inspector.register(Number.class, (appendable, number) -> appendable.append("#"));
+                    Inspector.register(Long.class, (appendable, number) -> appendable.append("L"));
+
+                    expect(inspect(asList(1, 2L))).toEqual("[2: #, L]");
+                });
+
+                it("unless removed", () -> {
+                    Inspector.register(Long.class, (appendable, number) -> appendable.append("L"));
+                    Inspector.register(Long.class, null);
+
+                    expect(inspect(asList(1, 2L))).toEqual("[2: 1, 2]");
+                });
+            });
+
+            describe("inspects fields", () -> {
+                afterEach(() -> Inspector.register(Person.class, null));
+
+                it("only when registered", () -> {
+                    final Person person = new Person("Joe", null);
+                    expect(inspect(person)).toEqual("<Person:Person>");
+
+                    Inspector.register(Person.class, Inspector.fields());
+                    expect(inspect(person)).toEqual("Person{name=\"Joe\", friend=<null>, tags=<ArrayList:size=0>}");
+                });
+
+                it("subject to depth and cycles", () -> {
+                    Inspector.register(Person.class, Inspector.fields());
+
+                    final Person joe = new Person("Joe", null);
+                    final Person ann = new Person("Ann", joe);
+                    joe.friend = ann;
+
+                    expect(deepInspect(asList(ann)))
+                        .toEqual("[Person{name=\"Ann\", friend=Person{name=\"Joe\", friend=<cycle:Person>, tags=[]}, tags=[]}]");
+
+                    expect(deepInspect(1, asList(ann)))
+                        .toEqual("[Person{name=\"Ann\", friend=Person{...}, tags=<ArrayList:size=0>}]");
+                });
+            });
+
+            describe("inspects with limits", () -> {
+                it("on number of elements", () ->
+                    expect(Inspector.unlimited().withMaxElements(2).inspectTo(new StringBuilder(), asList(1, 2, 3)).toString())
+                        .toEqual("[3: 1, 2, ...]"));
+
+                it("on string length", () ->
+                    expect(Inspector.unlimited().withMaxStringLength(3).inspectTo(new StringBuilder(), "abcdef").toString())
+                        .toEqual("\"abc...\""));
+
+                it("on string length keeping surrogate pairs", () ->
+                    expect(Inspector.unlimited().withMaxStringLength(3).inspectTo(new StringBuilder(), "ab\uD83D\uDE00c").toString())
+                        .toEqual("\"ab...\""));
+
+                it("on total length", () ->
+                    expect(Inspector.unlimited().withMaxLength(8).inspectTo(new StringBuilder(), asList(10, 20, 30)).toString())
+                        .toEqual("[3: 10, ..."));
+            });
+        });
+    }
+
+    static class Person {
+        static final int COUNT = 0;
+
+        final String name;
+        Person friend;
+        final List<String> tags = new ArrayList<>();
+
+        Person(final String name, final Person friend) {
+            this.name = name;
+            this.friend = friend;
+        }
+
+        @Override
+        public String toString() {
+            return "Person";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.objectUtils;
+
+import static com.bystr.stm.util.ObjectUtils.makeCompactMap;
+import static com.bystr.stm.util.ObjectUtils.makeCompactSet;
+import static com.bystr.stm.util.ObjectUtils.makeSet;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.CompactMap;
+import com.bystr.stm.util.ObjectUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class MakeCompactSpecTest {
+    {
+        describe(ObjectUtils.class.getName(), () -> {
+            describe("makes compact map", () -> {
+                it("being empty", () -> {
+                    final Map<String, Integer> map = ObjectUtils.<String, Integer>makeCompactMap().build();
+
+                    expect(map.isEmpty()).toBeTrue();
+                    expect(map.get("a")).toBeNull();
+                });
+
+                it("same as hash map at any size", () -> {
+                    for (final int size : new int[] { 1, 8, 9, 1000 }) {
+                        final Map<Integer, String> expected = new HashMap<>();
+                        final CompactMap.Builder<Integer, String> builder = makeCompactMap(size);
+
+                        for (int index = 0; index < size; ++index) {
+                            expected.put(index, "v" + index);
+                            builder.put(index, "v" + index);
+                        }
+
+                        final Map<Integer, String> map = builder.build();
+
+                        expect(map).toEqual(expected);
+                        expect(expected).toEqual(map);
+                        expect(map.hashCode()).toEqual(expected.hashCode());
+                        expect(map.get(size - 1)).toEqual("v" + (size - 1));
+                        expect(map.containsKey(size)).toBeFalse();
+                    }
+                });
+
+                it("keeping last value of repeated key", () -> {
+                    final Map<String, Integer> map = ObjectUtils.<String, Integer>makeCompactMap()
+                        .put("a", 1)
+                        .put("b", 2)
+                        .put("a", 3)
+                        .build();
+
+                    expect(map.size()).toEqual(2);
+                    expect(map.get("a")).toEqual(3);
+                });
+
+                it("allowing null values", () ->
+                    expect(ObjectUtils.<String, Integer>makeCompactMap().put("a", null).build().containsKey("a"))
+                        .toBeTrue());
+
+                it("rejecting null keys", () ->
+                    expect(() -> ObjectUtils.<String, Integer>makeCompactMap().put(null, 1).build())
+                        .toThrow(NullPointerException.class));
+
+                it("being immutable", () ->
+                    expect(() -> ObjectUtils.<String, Integer>makeCompactMap().build().put("a", 1))
+                        .toThrow(UnsupportedOperationException.class));
+            });
+
+            describe("makes compact set", () -> {
+                it("same as hash set", () -> {
+                    expect(makeCompactSet("a", "b", "a")).toEqual(makeSet("a", "b"));
+                    expect(makeCompactSet().isEmpty()).toBeTrue();
+                });
+
+                it("with large number of items", () -> {
+                    final Set<Integer> expected = new HashSet<>();
+
+                    for (int index = 0; index < 1000; ++index) {
+                        expected.add(index * 31);
+                    }
+
+                    final Set<Integer> set = makeCompactSet(expected.toArray(new Integer[0]));
+
+                    expect(set).toEqual(expected);
+                    expect(set.contains(31)).toBeTrue();
+                    expect(set.contains(32)).toBeFalse();
+                });
+            });
+        });
+    }
+}
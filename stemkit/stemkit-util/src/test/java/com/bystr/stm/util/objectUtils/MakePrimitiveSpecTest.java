@@ -0,0 +1,111 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.objectUtils;
+
+import static com.bystr.stm.util.ObjectUtils.makeIntSet;
+import static com.bystr.stm.util.ObjectUtils.makeLongSet;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.IntMap;
+import com.bystr.stm.util.IntSet;
+import com.bystr.stm.util.LongMap;
+import com.bystr.stm.util.LongSet;
+import com.bystr.stm.util.ObjectUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class MakePrimitiveSpecTest {
+    {
+        describe(ObjectUtils.class.getName(), () -> {
+            describe("makes int set", () -> {
+                it("with unique items", () -> {
+                    final IntSet set = makeIntSet(3, 0, -1, 3);
+
+                    expect(set.size()).toEqual(3);
+                    expect(set.toString()).toEqual("[-1, 0, 3]");
+                    expect(set.containsAll(0, 3, -1)).toBeTrue();
+                    expect(set.containsAll(0, 1)).toBeFalse();
+                });
+
+                it("growing as needed", () -> {
+                    final IntSet set = makeIntSet();
+
+                    for (int item = 0; item < 100000; item += 3) {
+                        set.add(item);
+                    }
+
+                    expect(set.size()).toEqual(33334);
+                    expect(set.contains(99999)).toBeTrue();
+                    expect(set.contains(99998)).toBeFalse();
+                });
+            });
+
+            describe("makes long set", () -> {
+                it("with unique items", () -> {
+                    final LongSet set = makeLongSet(Long.MAX_VALUE, 0, Long.MIN_VALUE, 0);
+                    final AtomicLong sum = new AtomicLong();
+
+                    set.forEach(sum::addAndGet);
+
+                    expect(set.size()).toEqual(3);
+                    expect(sum.get()).toEqual(-1L);
+                    expect(set.contains(1L << 32)).toBeFalse();
+                });
+            });
+
+            describe("makes int map", () -> {
+                it("with last value for each key", () -> {
+                    final IntMap<String> map = ObjectUtils.<String>makeIntMap()
+                        .put(0, "zero")
+                        .put(1, "one")
+                        .put(1, "uno");
+
+                    expect(map.size()).toEqual(2);
+                    expect(map.get(0)).toEqual("zero");
+                    expect(map.get(1)).toEqual("uno");
+                    expect(map.get(2)).toBeNull();
+                    expect(map.containsAllKeys(0, 1)).toBeTrue();
+                });
+
+                it("growing as needed", () -> {
+                    final IntMap<Integer> map = ObjectUtils.makeIntMap();
+
+                    for (int key = 1; key <= 10000; ++key) {
+                        map.put(-key, key);
+                    }
+
+                    final AtomicLong sum = new AtomicLong();
+                    map.forEach((key, value) -> sum.addAndGet(key + value));
+
+                    expect(map.size()).toEqual(10000);
+                    expect(map.get(-5000)).toEqual(5000);
+                    expect(sum.get()).toEqual(0L);
+                });
+            });
+
+            describe("makes long map", () -> {
+                it("with last value for each key", () -> {
+                    final LongMap<String> map = ObjectUtils.<String>makeLongMap()
+                        .put(1L << 40, "big")
+                        .put(1, "small");
+
+                    expect(map.get(1L << 40)).toEqual("big");
+                    expect(map.get(1)).toEqual("small");
+                    expect(map.containsKey(0)).toBeFalse();
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,107 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.batches;
+import static com.bystr.stm.util.StreamUtils.slidingWindows;
+import static com.bystr.stm.util.StreamUtils.windows;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class BatchesSpecTest {
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("makes batches", () -> {
+                it("of the specified size", () ->
+                    expect(batches(Stream.of(1, 2, 3, 4, 5), 2).collect(toList()))
+                        .toEqual(asList(asList(1, 2), asList(3, 4), asList(5))));
+
+                it("of nothing", () ->
+                    expect(batches(Stream.empty(), 2).count())
+                        .toEqual(0L));
+
+                it("lazily", () -> {
+                    final AtomicInteger pulled = new AtomicInteger();
+
+                    batches(Stream.iterate(0, item -> item + 1).peek(item -> pulled.incrementAndGet()), 10)
+                        .findFirst();
+
+                    expect(pulled.get()).toEqual(10);
+                });
+
+                it("from parallel stream", () -> {
+                    final List<List<Integer>> result = batches(IntStream.range(0, 10050).boxed().parallel(), 100).collect(toList());
+
+                    expect(result.size()).toEqual(101);
+                    expect(result.subList(0, 100).stream().allMatch(batch -> batch.size() == 100)).toBeTrue();
+                    expect(result.get(100).size()).toEqual(50);
+                    expect(result.stream().flatMap(List::stream).collect(toList()))
+                        .toEqual(IntStream.range(0, 10050).boxed().collect(toList()));
+                });
+
+                it("rejecting bad size", () ->
+                    expect(() -> batches(Stream.of(1), 0))
+                        .toThrow(IllegalArgumentException.class));
+            });
+
+            describe("makes windows", () -> {
+                it("bounded by size", () ->
+                    expect(windows(Stream.of(1, 2, 3), 2, Duration.ofHours(1)).collect(toList()))
+                        .toEqual(asList(asList(1, 2), asList(3))));
+
+                it("bounded by time", () ->
+                    expect(windows(Stream.of(1, 2, 3), 10, Duration.ZERO).collect(toList()))
+                        .toEqual(asList(asList(1), asList(2), asList(3))));
+
+                it("timed from the first item", () ->
+                    expect(windows(Stream.of(1, 2, 3).peek(item -> pause(item == 1 ? 200 : 0)), 10, Duration.ofMillis(100)).collect(toList()))
+                        .toEqual(asList(asList(1, 2, 3))));
+            });
+
+            describe("makes sliding windows", () -> {
+                it("by one item", () ->
+                    expect(slidingWindows(Stream.of(1, 2, 3, 4), 2).collect(toList()))
+                        .toEqual(asList(asList(1, 2), asList(2, 3), asList(3, 4))));
+
+                it("by larger step", () ->
+                    expect(slidingWindows(Stream.of(1, 2, 3, 4, 5, 6, 7), 2, 3).collect(toList()))
+                        .toEqual(asList(asList(1, 2), asList(4, 5))));
+
+                it("only when full", () ->
+                    expect(slidingWindows(Stream.of(1, 2), 3).collect(toList()))
+                        .toEqual(Collections.emptyList()));
+            });
+        });
+    }
+
+    private static void pause(final long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.filterChecked;
+import static com.bystr.stm.util.StreamUtils.forEachChecked;
+import static com.bystr.stm.util.StreamUtils.mapChecked;
+import static com.bystr.stm.util.StreamUtils.mapToHolder;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.Holder;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class CheckedStagesSpecTest {
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("maps with checked exceptions", () -> {
+                it("when all succeed", () ->
+                    expect(mapChecked(Stream.of(1, 2, 3), CheckedStagesSpecTest::half).collect(toList()))
+                        .toEqual(asList(0, 1, 1)));
+
+                it("aborting on failure", () ->
+                    expect(() -> mapChecked(Stream.of(2, -1, 4), CheckedStagesSpecTest::half).collect(toList()))
+                        .toThrow(RuntimeException.class, "java.io.IOException: Negative: -1"));
+
+                it("collecting failures", () -> {
+                    final List<Exception> failures = new ArrayList<>();
+
+                    expect(mapChecked(Stream.of(2, -1, 4, -3), CheckedStagesSpecTest::half, failures::add).collect(toList()))
+                        .toEqual(asList(1, 2));
+
+                    expect(failures.size()).toEqual(2);
+                    expect(failures.get(0).getMessage()).toEqual("Negative: -1");
+                });
+
+                it("in parallel", () -> {
+                    final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+                    expect(mapChecked(Stream.of(2, -1, 4, -3, 6).parallel(), CheckedStagesSpecTest::half, failures::add).collect(toList()))
+                        .toEqual(asList(1, 2, 3));
+
+                    expect(failures.size()).toEqual(2);
+                });
+            });
+
+            describe("filters with checked exceptions", () -> {
+                it("aborting on failure", () ->
+                    expect(() -> filterChecked(Stream.of(2, -1), item -> half(item) > 0).count())
+                        .toThrow(RuntimeException.class));
+
+                it("collecting failures", () -> {
+                    final List<Exception> failures = new ArrayList<>();
+
+                    expect(filterChecked(Stream.of(1, 2, -1, 4), item -> half(item) > 0, failures::add).collect(toList()))
+                        .toEqual(asList(2, 4));
+
+                    expect(failures.size()).toEqual(1);
+                });
+            });
+
+            describe("iterates with checked exceptions", () -> {
+                it("aborting on failure", () -> {
+                    final List<Integer> results = new ArrayList<>();
+
+                    expect(() -> forEachChecked(Stream.of(2, -1, 4), item -> results.add(half(item))))
+                        .toThrow(RuntimeException.class);
+
+                    expect(results).toEqual(asList(1));
+                });
+
+                it("collecting failures", () -> {
+                    final List<Integer> results = new ArrayList<>();
+                    final List<Exception> failures = new ArrayList<>();
+
+                    forEachChecked(Stream.of(2, -1, 4), item -> results.add(half(item)), failures::add);
+
+                    expect(results).toEqual(asList(1, 2));
+                    expect(failures.size()).toEqual(1);
+                });
+            });
+
+            describe("maps to holders", () -> {
+                it("keeping both values and failures", () -> {
+                    final List<Holder<Integer>> holders = mapToHolder(Stream.of(2, -1), CheckedStagesSpecTest::half).collect(toList());
+
+                    expect(holders.get(0).get()).toEqual(1);
+                    expect(holders.get(1).hasException(IOException.class)).toBeTrue();
+                });
+            });
+        });
+    }
+
+    private static int half(final int item) throws IOException {
+        if (item < 0) {
+            throw new IOException("Negative: " + item);
+        }
+
+        return item / 2;
+    }
+}
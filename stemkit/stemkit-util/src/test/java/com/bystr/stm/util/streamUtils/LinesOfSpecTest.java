@@ -0,0 +1,86 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.linesOf;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.after;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.before;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class LinesOfSpecTest {
+    Path path;
+
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("streams lines of file", () -> {
+                before(() -> {
+                    path = Files.createTempFile("lines", ".txt");
+                });
+
+                after(() -> {
+                    Files.deleteIfExists(path);
+                });
+
+                it("being empty", () -> {
+                    Files.write(path, new byte[0]);
+                    expect(linesOf(path).count()).toEqual(0L);
+                });
+
+                it("with any line endings", () -> {
+                    Files.write(path, "a\r\n\nb c\nlast".getBytes(UTF_8));
+
+                    expect(linesOf(path).map(CharSequence::toString).collect(toList()))
+                        .toEqual(asList("a", "", "b c", "last"));
+                });
+
+                it("with views of ascii lines", () -> {
+                    Files.write(path, "hello\n".getBytes(UTF_8));
+                    final CharSequence line = linesOf(path).findFirst().get();
+
+                    expect(line.length()).toEqual(5);
+                    expect(line.charAt(1)).toEqual('e');
+                    expect(line.subSequence(1, 3).toString()).toEqual("el");
+                });
+
+                it("with decoded non ascii lines", () -> {
+                    Files.write(path, "żółw\n".getBytes(UTF_8));
+                    final CharSequence line = linesOf(path).findFirst().get();
+
+                    expect(line.length()).toEqual(4);
+                    expect(line.charAt(1)).toEqual('ó');
+                    expect(line.toString()).toEqual("żółw");
+                });
+
+                it("same in parallel", () -> {
+                    final List<String> lines = IntStream.range(0, 50000).mapToObj(index -> "line " + index).collect(toList());
+                    Files.write(path, lines, UTF_8);
+
+                    expect(linesOf(path).parallel().map(CharSequence::toString).collect(toList()))
+                        .toEqual(lines);
+                });
+            });
+        });
+    }
+}
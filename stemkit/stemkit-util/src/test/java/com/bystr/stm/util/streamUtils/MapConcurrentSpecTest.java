@@ -0,0 +1,92 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.mapConcurrent;
+import static com.bystr.stm.util.StreamUtils.mapConcurrentToHolders;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.Holder;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class MapConcurrentSpecTest {
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("maps concurrently", () -> {
+                it("keeping order", () ->
+                    expect(mapConcurrent(IntStream.range(0, 200).boxed(), 8, item -> {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                        return item * 2;
+                    }).collect(toList()))
+                        .toEqual(IntStream.range(0, 200).map(item -> item * 2).boxed().collect(toList())));
+
+                it("within concurrency limit", () -> {
+                    final AtomicInteger running = new AtomicInteger();
+                    final AtomicInteger maxRunning = new AtomicInteger();
+
+                    mapConcurrent(IntStream.range(0, 50).boxed(), 4, item -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(2);
+                        running.decrementAndGet();
+
+                        return item;
+                    }).count();
+
+                    expect(maxRunning.get() <= 4).toBeTrue();
+                });
+
+                it("propagating first failure", () -> {
+                    final List<Integer> results = new ArrayList<>();
+
+                    expect(() -> mapConcurrent(IntStream.range(0, 100).boxed(), 4, item -> {
+                        if (item == 10) {
+                            throw new IOException("Failed: " + item);
+                        }
+
+                        return item;
+                    }).forEach(results::add)).toThrow(RuntimeException.class, "java.io.IOException: Failed: 10");
+
+                    expect(results).toEqual(IntStream.range(0, 10).boxed().collect(toList()));
+                });
+
+                it("collecting all failures", () -> {
+                    final List<Holder<Integer>> holders = mapConcurrentToHolders(IntStream.range(0, 10).boxed(), 3, item -> {
+                        if (item % 2 == 1) {
+                            throw new IOException("Odd");
+                        }
+
+                        return item;
+                    }).collect(toList());
+
+                    expect(holders.size()).toEqual(10);
+                    expect(holders.stream().filter(Holder::hasException).count()).toEqual(5L);
+                    expect(holders.get(4).get()).toEqual(4);
+                });
+
+                it("rejecting bad concurrency", () ->
+                    expect(() -> mapConcurrent(IntStream.range(0, 1).boxed(), 0, item -> item))
+                        .toThrow(IllegalArgumentException.class));
+            });
+        });
+    }
+}
@@ -0,0 +1,88 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.mergeSorted;
+import static com.bystr.stm.util.StreamUtils.mergeSortedDistinct;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class MergeSortedSpecTest {
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("merges sorted iterators", () -> {
+                it("in order", () ->
+                    expect(mergeSorted(naturalOrder(), asList(1, 4, 7).iterator(), asList(2, 5).iterator(), asList(3, 6, 8, 9).iterator()).collect(toList()))
+                        .toEqual(asList(1, 2, 3, 4, 5, 6, 7, 8, 9)));
+
+                it("with some empty", () ->
+                    expect(mergeSorted(naturalOrder(), Collections.<Integer>emptyIterator(), asList(1, 2).iterator()).collect(toList()))
+                        .toEqual(asList(1, 2)));
+
+                it("with none at all", () ->
+                    expect(StreamUtils.<Integer>mergeSorted(naturalOrder(), new Iterator[0]).count())
+                        .toEqual(0L));
+
+                it("keeping order of equal items", () ->
+                    expect(mergeSorted(comparing(String::length), asList("a", "ccc").iterator(), asList("b", "dd").iterator()).collect(toList()))
+                        .toEqual(asList("a", "b", "dd", "ccc")));
+
+                it("leaving out repeated items", () ->
+                    expect(mergeSortedDistinct(naturalOrder(), asList(1, 2, 2, 3).iterator(), asList(2, 3, 4).iterator()).collect(toList()))
+                        .toEqual(asList(1, 2, 3, 4)));
+
+                it("lazily", () ->
+                    expect(mergeSorted(naturalOrder(), Stream.iterate(0, item -> item + 2).iterator(), Stream.iterate(1, item -> item + 2).iterator()).limit(5).collect(toList()))
+                        .toEqual(asList(0, 1, 2, 3, 4)));
+
+                it("pulling nothing before traversal", () -> {
+                    final AtomicInteger pulled = new AtomicInteger();
+                    final Stream<Integer> merged = mergeSorted(naturalOrder(), Stream.of(1, 3).peek(item -> pulled.incrementAndGet()).iterator(), Stream.of(2).iterator());
+
+                    expect(pulled.get()).toEqual(0);
+                    expect(merged.collect(toList())).toEqual(asList(1, 2, 3));
+                    expect(pulled.get()).toEqual(2);
+                });
+            });
+
+            describe("merges sorted streams", () -> {
+                it("closing them", () -> {
+                    final AtomicBoolean closed = new AtomicBoolean();
+
+                    try (Stream<Integer> merged = mergeSorted(naturalOrder(), Stream.of(1, 3).onClose(() -> closed.set(true)), Stream.of(2))) {
+                        expect(merged.collect(toList())).toEqual(asList(1, 2, 3));
+                    }
+
+                    expect(closed.get()).toBeTrue();
+                });
+
+                it("leaving out repeated items", () ->
+                    expect(mergeSortedDistinct(naturalOrder(), Stream.of(1, 1, 2), Stream.of(1, 3)).collect(toList()))
+                        .toEqual(asList(1, 2, 3)));
+            });
+        });
+    }
+}
@@ -0,0 +1,114 @@
+/*  vim: set sw=4:
+ *  Copyright (c) 2018, Gennady Bystritsky <gennady@bystr.com>
+ *
+ *  Distributed under the MIT License.
+ *  This is free software. See 'LICENSE' for details.
+ *  You must read and accept the license prior to use.
+*/
+
+package com.bystr.stm.util.streamUtils;
+
+import static com.bystr.stm.util.StreamUtils.parallelStreamFrom;
+import static com.bystr.stm.util.StreamUtils.parallelStreamOf;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.describe;
+import static com.mscharhag.oleaster.runner.StaticRunnerSupport.it;
+import static java.util.stream.Collectors.toList;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+
+import org.junit.runner.RunWith;
+
+import com.bystr.stm.bdd.BDDSpecRunner;
+import com.bystr.stm.util.StreamUtils;
+
+@RunWith(BDDSpecRunner.class)
+public class ParallelStreamSpecTest {
+    private final List<Integer> items = IntStream.range(0, 10000).boxed().collect(toList());
+
+    {
+        describe(StreamUtils.class.getName(), () -> {
+            describe("makes parallel stream", () -> {
+                it("from array", () ->
+                    expect(parallelStreamOf(items.toArray(new Integer[0])).map(item -> item * 2).collect(toList()))
+                        .toEqual(items.stream().map(item -> item * 2).collect(toList())));
+
+                it("from random access list", () -> {
+                    final List<Integer> list = new Indexed(items);
+                    final Spliterator<Integer> spliterator = parallelStreamFrom(list).spliterator();
+
+                    expect(spliterator.trySplit().estimateSize()).toEqual(5000L);
+                    expect(parallelStreamFrom(list).collect(toList())).toEqual(items);
+                });
+
+                it("from other collection", () ->
+                    expect(parallelStreamFrom(new LinkedList<>(items)).collect(toList()))
+                        .toEqual(items));
+
+                it("from iterator of unknown size", () -> {
+                    final Spliterator<Integer> spliterator = parallelStreamFrom(items.iterator(), Long.MAX_VALUE).spliterator();
+
+                    expect(spliterator.trySplit().estimateSize()).toEqual(16L);
+                    expect(spliterator.trySplit().estimateSize()).toEqual(32L);
+                    expect(parallelStreamFrom(items.iterator(), Long.MAX_VALUE).collect(toList())).toEqual(items);
+                });
+
+                it("from iterator of estimated size", () ->
+                    expect(parallelStreamFrom(items.iterator(), 100).collect(toList()))
+                        .toEqual(items));
+
+                it("from iterable traversable only once", () ->
+                    expect(parallelStreamFrom(new SingleShot(items.iterator())).collect(toList()))
+                        .toEqual(items));
+            });
+        });
+    }
+
+    // An iterable that can be traversed just once, like one over a channel.
+    //
+    private static final class SingleShot implements Iterable<Integer> {
+        private Iterator<Integer> _iterator;
+
+        SingleShot(final Iterator<Integer> iterator) {
+            _iterator = iterator;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            if (_iterator == null) {
+                throw new IllegalStateException("Already traversed");
+            }
+
+            final Iterator<Integer> iterator = _iterator;
+
+            _iterator = null;
+            return iterator;
+        }
+    }
+
+    // A random access list relying on the default, iterator based spliterator.
+    //
+    private static final class Indexed extends AbstractList<Integer> implements RandomAccess {
+        private final List<Integer> _items;
+
+        Indexed(final List<Integer> items) {
+            _items = items;
+        }
+
+        @Override
+        public Integer get(final int index) {
+            return _items.get(index);
+        }
+
+        @Override
+        public int size() {
+            return _items.size();
+        }
+    }
+}
@@ -32,12 +32,14 @@ import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
 import org.springframework.web.client.UnknownHttpStatusCodeException;
 
+import com.bystr.stm.util.FailureLogger;
 import com.bystr.stm.util.Holder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class RestCommunicator<T> {
     private static final Logger logger = LoggerFactory.getLogger(RestCommunicator.class);
+    private static final FailureLogger failureLogger = new FailureLogger(logger);
     private static final ObjectMapper mapper = new ObjectMapper();
 
     private final UnaryOperator<String> _urlMaker;
@@ -121,17 +123,20 @@ public class RestCommunicator<T> {
         final HttpEntity<?> entity = new HttpEntity<>(_body, _headers);
 
         if (_classReference != null) {
-            return ensureResponse(leakExceptions, () -> _restOperations.exchange(uri, method, entity, _classReference));
+            return ensureResponse(leakExceptions, uri.getAuthority(), () -> _restOperations.exchange(uri, method, entity, _classReference));
         }
 
         if (_typeReference != null) {
-            return ensureResponse(leakExceptions, () -> _restOperations.exchange(uri, method, entity, _typeReference));
+            return ensureResponse(leakExceptions, uri.getAuthority(), () -> _restOperations.exchange(uri, method, entity, _typeReference));
         }
 
         throw new IllegalStateException("Unknown response type for http request");
     }
 
-    private static <T> ResponseEntity<T> ensureResponse(final boolean leakExceptions, final Supplier<ResponseEntity<T>> responseSupplier) {
+    // Failures get fingerprinted by the service, so that a failing one does
+    // not hide the failures of the others.
+    //
+    private static <T> ResponseEntity<T> ensureResponse(final boolean leakExceptions, final String service, final Supplier<ResponseEntity<T>> responseSupplier) {
         final Holder<ResponseEntity<T>> responseHolder = holdFrom(responseSupplier::get);
 
         if (leakExceptions == true) {
@@ -144,26 +149,29 @@ public class RestCommunicator<T> {
 
         return responseHolder
             .whenException(HttpStatusCodeException.class).thenSet(exception -> {
-                logger.info("{}: HTTP status: {}: {}", label, exception.getStatusCode(), exception.getStatusText());
+                // Details only get parsed and logged along with the status line,
+                // so that a failing downstream service does not flood the log.
+                //
+                if (failureLogger.infoAt(service, exception, "{}: HTTP status: {}: {}", label, exception.getStatusCode(), exception.getStatusText()) == true) {
+                    ignoreWhenException(() -> {
+                        final JsonNode node = mapper.readValue(exception.getResponseBodyAsString(), JsonNode.class);
 
-                ignoreWhenException(() -> {
-                    final JsonNode node = mapper.readValue(exception.getResponseBodyAsString(), JsonNode.class);
+                        final String reason = node.get("reason").asText();
+                        final String remediation = node.get("remediation").asText();
 
-                    final String reason = node.get("reason").asText();
-                    final String remediation = node.get("remediation").asText();
-
-                    logger.info("{}: reason: {}", label, reason);
-                    logger.info("{}: remediation: {}", label, remediation);
-                });
+                        logger.info("{}: reason: {}", label, reason);
+                        logger.info("{}: remediation: {}", label, remediation);
+                    });
+                }
 
                 return new ResponseEntity<>(null, exception.getResponseHeaders(), exception.getStatusCode());
             })
             .whenException(UnknownHttpStatusCodeException.class).thenRaise(exception -> {
-                logger.info("{}: Unknown HTTP status code {}: {}", label, exception.getRawStatusCode(), exception.getStatusText());
+                failureLogger.infoAt(service, exception, "{}: Unknown HTTP status code {}: {}", label, exception.getRawStatusCode(), exception.getStatusText());
                 return exception;
             })
             .whenException().thenRaise(exception -> {
-                logger.info("{}: Unexpected exception: {}: {}", label, exception.getClass().getName(), exception.getMessage());
+                failureLogger.infoAt(service, exception, "{}: Unexpected exception: {}: {}", label, exception.getClass().getName(), exception.getMessage());
                 return runtimeExceptionUnlessAlready(exception);
             })
             .get();